@@ -2,13 +2,18 @@ package com.smartsubscription;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.boot.autoconfigure.domain.EntityScan;
-import org.springframework.context.annotation.ComponentScan;
-import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication(scanBasePackages = "com.smart-subscription")
+// Payment's own beans and the shared ones; the subscription module is on the classpath for its
+// entities and repositories only, so none of its services, schedulers or listeners start here
+@SpringBootApplication(scanBasePackages = {
+    "com.smartsubscription.payment",
+    "com.smartsubscription.controller",
+    "com.smartsubscription.data"
+})
 @EnableKafka
+@EnableScheduling
 public class PaymentServiceApplication {
     
     public static void main(String[] args) {
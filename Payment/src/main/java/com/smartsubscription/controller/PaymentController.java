@@ -1,4 +1,5 @@
 package com.smartsubscription.controller;
+import com.smartsubscription.data.idempotency.IdempotencyService;
 import com.smartsubscription.payment.entity.PaymentRequest;
 import com.smartsubscription.payment.entity.PaymentResponse;
 import com.smartsubscription.payment.service.PaymentService;
@@ -15,16 +16,20 @@ import java.security.Principal;
 public class PaymentController {
     
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
     
+    // Retries carrying the same Idempotency-Key replay the first response instead of charging again
     @PostMapping("/process")
-    public ResponseEntity<PaymentResponse> processPayment(
+    public ResponseEntity<?> processPayment(
             Principal principal,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody PaymentRequest request) {
         
         String userId = principal.getName(); // From JWT
-        PaymentResponse response = paymentService.doPayment(userId, request);
-        
-        return ResponseEntity.ok(response);
+        return idempotencyService.execute("payment-process", userId, idempotencyKey, request, () -> {
+            PaymentResponse response = paymentService.doPayment(userId, request);
+            return ResponseEntity.ok(response);
+        });
     }
     
     @PostMapping("/{paymentId}/cancel")
@@ -0,0 +1,25 @@
+package com.smartsubscription.payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// A message waiting in outbox_events; payload is the JSON value to send
+@Getter
+@AllArgsConstructor
+public class OutboxEvent {
+
+    private final long id;
+
+    private final String topic;
+
+    private final String messageKey;
+
+    private final String payload;
+
+    private final LocalDateTime createdAt;
+
+    // Failed sends so far
+    private final int attempts;
+}
@@ -1,5 +1,6 @@
 package com.smartsubscription.payment.entity;
 
+import com.smartsubscription.data.id.UuidV7Id;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -19,7 +20,7 @@ import java.util.UUID;
 public class Payment {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     @Column(updatable = false, nullable = false)
     private UUID id;
     
@@ -39,12 +40,20 @@ public class Payment {
     @Column(name = "transaction_id")
     private String transactionId;
     
+    // What the charge was sent with; null for renewal charges
+    @Column(name = "payment_method_token")
+    private String paymentMethodToken;
+    
     @Column(name = "refund_amount")
     private BigDecimal refundAmount;
     
     @Column(name = "refund_transaction_id")
     private String refundTransactionId;
     
+    // Set for charges requested by the subscription service's renewal job
+    @Column(name = "renewal_charge_id", unique = true)
+    private String renewalChargeId;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,144 @@
+package com.smartsubscription.payment.provider;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Failure-rate circuit breaker over a sliding window of the last windowSize outcomes.
+ * Once at least minimumCalls are in the window and the failing share reaches the
+ * threshold, the breaker opens and refuses calls for openMillis. It then lets
+ * halfOpenProbes calls through: if they all succeed it closes with a fresh window,
+ * and any failure opens it again.
+ * <p>
+ * A granted permission is a token naming the breaker's generation, which changes with
+ * every transition; outcomes are reported with it, and those from an earlier
+ * generation are dropped. A slow call started before the breaker opened therefore
+ * cannot count as a half-open probe, nor fill the fresh window after it closes.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // Returned by tryAcquirePermission when the call must not go out
+    public static final long REJECTED = -1;
+
+    private final String name;
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int next;
+    private int calls;
+    private int failures;
+    private long openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRatePercent,
+                          long openMillis, int halfOpenProbes) {
+        this.name = name;
+        this.window = new boolean[Math.max(windowSize, 1)];
+        this.minimumCalls = Math.max(Math.min(minimumCalls, window.length), 1);
+        this.failureRateThreshold = failureRatePercent / 100.0;
+        this.openNanos = openMillis * 1_000_000;
+        this.halfOpenProbes = Math.max(halfOpenProbes, 1);
+    }
+
+    // A permit for one call, or REJECTED; every permit must be handed back to onSuccess or onFailure
+    public synchronized long tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return REJECTED;
+            }
+            transition(State.HALF_OPEN);
+            probesIssued = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= halfOpenProbes) {
+                return REJECTED;
+            }
+            probesIssued++;
+        }
+        return generation;
+    }
+
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open("a trial call failed");
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+                open(failures + " of the last " + calls + " calls failed");
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // Failing share of the current window, 0 to 1
+    public synchronized double getFailureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    private void record(boolean failed) {
+        if (calls == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open(String reason) {
+        log.warn("Circuit {} opened: {}", name, reason);
+        openedAt = System.nanoTime();
+        resetWindow();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            log.info("Circuit {} {} -> {}", name, state, to);
+            state = to;
+            generation++;
+        }
+    }
+}
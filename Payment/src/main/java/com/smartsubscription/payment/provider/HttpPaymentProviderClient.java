@@ -0,0 +1,200 @@
+package com.smartsubscription.payment.provider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Talks to a Stripe-compatible REST API (payment intents and refunds, form-encoded,
+ * bearer api key, Idempotency-Key header) with the JDK's asynchronous HttpClient, which
+ * keeps connections to the provider alive and reuses them across calls. Each call has
+ * its own response timeout, and at most payment.provider.max-in-flight calls are
+ * outstanding: beyond that a call fails at once with a retryable error instead of
+ * queueing without bound. Calls never block the caller; every outcome, a full client
+ * included, arrives through the returned future.
+ * <p>
+ * Latency is recorded in the payment.provider.requests timer, by operation and outcome.
+ */
+@Component
+@Slf4j
+public class HttpPaymentProviderClient implements PaymentProviderClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final URI baseUri;
+    private final String apiKey;
+    private final String currency;
+    private final Duration requestTimeout;
+    private final Semaphore inFlight;
+
+    public HttpPaymentProviderClient(ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${payment.provider.url}") String url,
+                                     @Value("${payment.provider.api-key}") String apiKey,
+                                     @Value("${payment.provider.currency:usd}") String currency,
+                                     @Value("${payment.provider.connect-timeout-ms:2000}") long connectTimeoutMillis,
+                                     @Value("${payment.provider.request-timeout-ms:5000}") long requestTimeoutMillis,
+                                     @Value("${payment.provider.max-in-flight:200}") int maxInFlight) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.baseUri = URI.create(url.endsWith("/") ? url : url + "/");
+        this.apiKey = apiKey;
+        this.currency = currency;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.inFlight = new Semaphore(maxInFlight);
+        // HTTP/1.1: keep-alive connections are pooled per host without HTTP/2 stream limits
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+            .build();
+    }
+
+    @Override
+    public CompletableFuture<String> charge(String paymentMethodToken, BigDecimal amount, String idempotencyKey) {
+        if (paymentMethodToken == null) {
+            // The provider refuses a confirmed intent with neither a payment method nor a customer
+            return CompletableFuture.failedFuture(new PaymentProviderException(
+                "No payment method to charge: none given and no customer payment method on file", 0, false));
+        }
+        Map<String, String> form = new LinkedHashMap<>();
+        form.put("amount", minorUnits(amount));
+        form.put("currency", currency);
+        form.put("confirm", "true");
+        form.put("payment_method", paymentMethodToken);
+        return post("charge", "v1/payment_intents", form, idempotencyKey);
+    }
+
+    @Override
+    public CompletableFuture<String> refund(String transactionId, BigDecimal amount, String idempotencyKey) {
+        Map<String, String> form = new LinkedHashMap<>();
+        form.put("payment_intent", transactionId);
+        form.put("amount", minorUnits(amount));
+        return post("refund", "v1/refunds", form, idempotencyKey);
+    }
+
+    private CompletableFuture<String> post(String operation, String path, Map<String, String> form,
+                                           String idempotencyKey) {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path))
+            .timeout(requestTimeout)
+            .header("Authorization", "Bearer " + apiKey)
+            .header("Idempotency-Key", idempotencyKey)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(encode(form)))
+            .build();
+
+        if (!inFlight.tryAcquire()) {
+            record(operation, "saturated", 0);
+            return CompletableFuture.failedFuture(new PaymentProviderException(
+                "Too many payment provider calls in flight", 0, true));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> sent;
+        try {
+            sent = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            record(operation, "io_error", System.nanoTime() - start);
+            return CompletableFuture.failedFuture(transportFailure(operation, e));
+        }
+        return sent.handle((response, error) -> {
+            inFlight.release();
+            long elapsed = System.nanoTime() - start;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                record(operation, cause instanceof HttpTimeoutException ? "timeout" : "io_error", elapsed);
+                throw transportFailure(operation, cause);
+            }
+            try {
+                String id = parse(operation, response);
+                record(operation, "success", elapsed);
+                return id;
+            } catch (PaymentProviderException e) {
+                record(operation, e.isRetryable() ? "error" : "rejected", elapsed);
+                throw e;
+            }
+        });
+    }
+
+    private String parse(String operation, HttpResponse<String> response) {
+        JsonNode body;
+        try {
+            body = objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new PaymentProviderException("Unreadable " + operation + " response from payment provider",
+                response.statusCode(), response.statusCode() >= 500);
+        }
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            String id = body.path("id").asText(null);
+            String outcome = body.path("status").asText("");
+            if (id == null || !outcome.equals("succeeded")) {
+                throw new PaymentProviderException("Payment provider " + operation + " ended as '" + outcome + "'",
+                    status, false);
+            }
+            return id;
+        }
+        String message = body.path("error").path("message").asText("HTTP " + status);
+        // 409 is a concurrent request under the same idempotency key, 429 rate limiting
+        boolean retryable = status >= 500 || status == 409 || status == 429;
+        throw new PaymentProviderException("Payment provider rejected " + operation + ": " + message, status, retryable);
+    }
+
+    private static PaymentProviderException transportFailure(String operation, Throwable cause) {
+        if (cause instanceof HttpConnectTimeoutException) {
+            return new PaymentProviderException("Timed out connecting to payment provider", cause, true);
+        }
+        if (cause instanceof HttpTimeoutException) {
+            return new PaymentProviderException("Timed out waiting for payment provider " + operation, cause, true);
+        }
+        return new PaymentProviderException("Payment provider " + operation + " failed: " + cause.getMessage(),
+            cause, true);
+    }
+
+    private void record(String operation, String outcome, long elapsedNanos) {
+        Timer.builder("payment.provider.requests")
+            .description("Payment provider calls")
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry)
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Stripe amounts are integers in the currency's smallest unit
+    private static String minorUnits(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).toBigIntegerExact().toString();
+    }
+
+    private static String encode(Map<String, String> form) {
+        return form.entrySet().stream()
+            .map(entry -> URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "="
+                + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
+            .collect(Collectors.joining("&"));
+    }
+}
@@ -0,0 +1,19 @@
+package com.smartsubscription.payment.provider;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The external payment provider. Calls return at once; the future completes with the
+ * provider's transaction id, or exceptionally with a {@link PaymentProviderException}.
+ * The idempotency key makes a repeated call with the same key a no-op at the provider,
+ * so a call that timed out can be retried without charging twice.
+ */
+public interface PaymentProviderClient {
+
+    // Fails with a non-retryable PaymentProviderException when paymentMethodToken is null:
+    // no customer with a saved payment method is stored to charge off-session instead
+    CompletableFuture<String> charge(String paymentMethodToken, BigDecimal amount, String idempotencyKey);
+
+    CompletableFuture<String> refund(String transactionId, BigDecimal amount, String idempotencyKey);
+}
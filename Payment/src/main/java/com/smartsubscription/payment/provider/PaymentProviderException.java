@@ -0,0 +1,41 @@
+package com.smartsubscription.payment.provider;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A provider call that did not succeed. Retryable failures (timeouts, 5xx, the client
+ * being saturated) may succeed if tried again with the same idempotency key; the rest
+ * (declines, invalid requests) will not.
+ */
+public class PaymentProviderException extends RuntimeException {
+
+    private final int status;
+    private final boolean retryable;
+
+    public PaymentProviderException(String message, int status, boolean retryable) {
+        super(message);
+        this.status = status;
+        this.retryable = retryable;
+    }
+
+    public PaymentProviderException(String message, Throwable cause, boolean retryable) {
+        super(message, cause);
+        this.status = 0;
+        this.retryable = retryable;
+    }
+
+    // HTTP status from the provider, or 0 when no response came back
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    // No answer came back in time, so the provider may or may not have acted on the request
+    public boolean isTimeout() {
+        return getCause() instanceof TimeoutException || getCause() instanceof HttpTimeoutException;
+    }
+}
@@ -0,0 +1,285 @@
+package com.smartsubscription.payment.provider;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a slow or failing provider from taking the Payment service down with it.
+ * Wraps {@link HttpPaymentProviderClient} with, from the outside in:
+ * <ul>
+ * <li>a bulkhead: at most bulkhead.max-concurrent callers wait on the provider at
+ * once, so request threads left over for everything else, GETs included, never run
+ * out; a caller that finds it full for max-wait-ms is refused at once;</li>
+ * <li>an overall deadline, call-timeout-ms, on the whole call, retries included;</li>
+ * <li>jittered exponential retries of retryable failures, which the idempotency key
+ * makes safe for both charges and refunds;</li>
+ * <li>optionally for refunds, a hedge: a second identical request once the first has
+ * been outstanding for hedge.delay-ms, the first success winning;</li>
+ * <li>a failure-rate {@link CircuitBreaker} in front of every request, so an
+ * unhealthy provider is given time to recover instead of more load.</li>
+ * </ul>
+ * Retries and hedges are timed on a dedicated scheduler and sent from a separate
+ * pool, never from request threads or the scheduler itself, so however long a send
+ * takes to hand its request over, it cannot hold up other timers.
+ * Declines and other final answers count as the provider working. Meters:
+ * payment.provider.circuit.state (0 closed, 1 open, 2 half open),
+ * payment.provider.circuit.failure.rate, payment.provider.bulkhead.available,
+ * payment.provider.rejected (by reason), payment.provider.retries and
+ * payment.provider.hedges.
+ */
+@Component
+@Primary
+@Slf4j
+public class ResilientPaymentProviderClient implements PaymentProviderClient, DisposableBean {
+
+    private final PaymentProviderClient delegate;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sender;
+    private final long maxWaitMillis;
+    private final long callTimeoutMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final boolean hedgeRefunds;
+    private final long hedgeDelayMillis;
+    private final Counter retries;
+    private final Counter hedges;
+
+    public ResilientPaymentProviderClient(
+            HttpPaymentProviderClient delegate,
+            MeterRegistry meterRegistry,
+            @Value("${payment.provider.resilience.call-timeout-ms:10000}") long callTimeoutMillis,
+            @Value("${payment.provider.resilience.bulkhead.max-concurrent:50}") int maxConcurrent,
+            @Value("${payment.provider.resilience.bulkhead.max-wait-ms:100}") long maxWaitMillis,
+            @Value("${payment.provider.resilience.retry.max-attempts:3}") int maxAttempts,
+            @Value("${payment.provider.resilience.retry.backoff-ms:100}") long backoffMillis,
+            @Value("${payment.provider.resilience.retry.max-backoff-ms:1000}") long maxBackoffMillis,
+            @Value("${payment.provider.resilience.circuit-breaker.window-size:50}") int windowSize,
+            @Value("${payment.provider.resilience.circuit-breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${payment.provider.resilience.circuit-breaker.failure-rate-threshold:50}") double failureRate,
+            @Value("${payment.provider.resilience.circuit-breaker.open-ms:30000}") long openMillis,
+            @Value("${payment.provider.resilience.circuit-breaker.half-open-probes:3}") int halfOpenProbes,
+            @Value("${payment.provider.resilience.hedge.refunds:false}") boolean hedgeRefunds,
+            @Value("${payment.provider.resilience.hedge.delay-ms:1000}") long hedgeDelayMillis) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.circuitBreaker = new CircuitBreaker("payment-provider", windowSize, minimumCalls, failureRate,
+            openMillis, halfOpenProbes);
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxWaitMillis = maxWaitMillis;
+        this.callTimeoutMillis = callTimeoutMillis;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.hedgeRefunds = hedgeRefunds;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-provider-resilience");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Unbounded in principle, but the bulkhead caps how many calls can have a delayed send pending
+        this.sender = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "payment-provider-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("payment.provider.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+            .description("Provider circuit: 0 closed, 1 open, 2 half open")
+            .register(meterRegistry);
+        Gauge.builder("payment.provider.circuit.failure.rate", circuitBreaker, CircuitBreaker::getFailureRate)
+            .description("Failing share of the provider calls in the circuit's window")
+            .register(meterRegistry);
+        Gauge.builder("payment.provider.bulkhead.available", bulkhead, Semaphore::availablePermits)
+            .description("Callers that may still start waiting on the provider")
+            .register(meterRegistry);
+        this.retries = Counter.builder("payment.provider.retries")
+            .description("Provider requests repeated after a retryable failure")
+            .register(meterRegistry);
+        this.hedges = Counter.builder("payment.provider.hedges")
+            .description("Second refund requests sent while the first was still outstanding")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<String> charge(String paymentMethodToken, BigDecimal amount, String idempotencyKey) {
+        return call("charge", () -> delegate.charge(paymentMethodToken, amount, idempotencyKey), false);
+    }
+
+    @Override
+    public CompletableFuture<String> refund(String transactionId, BigDecimal amount, String idempotencyKey) {
+        return call("refund", () -> delegate.refund(transactionId, amount, idempotencyKey), hedgeRefunds);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    private CompletableFuture<String> call(String operation, Supplier<CompletableFuture<String>> request,
+                                           boolean hedged) {
+        try {
+            if (!bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                return CompletableFuture.failedFuture(rejected("bulkhead_full",
+                    "Too many payments waiting on the provider"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new PaymentProviderException(
+                "Interrupted while waiting for the payment provider bulkhead", e, true));
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        attempt(operation, request, hedged, 1, result);
+        return result.orTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+            .handle((id, error) -> {
+                bulkhead.release();
+                if (error != null) {
+                    throw toProviderException(operation, error);
+                }
+                return id;
+            });
+    }
+
+    private void attempt(String operation, Supplier<CompletableFuture<String>> request, boolean hedged,
+                         int attempt, CompletableFuture<String> result) {
+        if (result.isDone()) {
+            // Timed out meanwhile; nobody is waiting for this attempt
+            return;
+        }
+        long permit = circuitBreaker.tryAcquirePermission();
+        if (permit == CircuitBreaker.REJECTED) {
+            result.completeExceptionally(rejected("circuit_open", "Payment provider circuit is open"));
+            return;
+        }
+
+        CompletableFuture<String> outcome = hedged ? hedged(request, permit) : guarded(request, permit);
+        outcome.whenComplete((id, error) -> {
+            if (error == null) {
+                result.complete(id);
+                return;
+            }
+            PaymentProviderException failure = toProviderException(operation, error);
+            if (!failure.isRetryable() || attempt >= maxAttempts) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            retries.increment();
+            long delay = backoff(attempt);
+            log.debug("Payment provider {} failed (attempt {}), retrying in {} ms: {}",
+                operation, attempt, delay, failure.getMessage());
+            later(() -> attempt(operation, request, hedged, attempt + 1, result), delay);
+        });
+    }
+
+    // Sends a second request if the first is still out after the hedge delay; first success wins
+    private CompletableFuture<String> hedged(Supplier<CompletableFuture<String>> request, long permit) {
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        BiConsumer<String, Throwable> settle = (id, error) -> {
+            if (error == null) {
+                winner.complete(id);
+            } else if (outstanding.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+        };
+
+        guarded(request, permit).whenComplete(settle);
+        later(() -> {
+            if (winner.isDone()) {
+                return;
+            }
+            long hedgePermit = circuitBreaker.tryAcquirePermission();
+            if (hedgePermit != CircuitBreaker.REJECTED) {
+                outstanding.incrementAndGet();
+                hedges.increment();
+                guarded(request, hedgePermit).whenComplete(settle);
+            }
+        }, hedgeDelayMillis);
+        return winner;
+    }
+
+    // The scheduler only keeps time; the task itself runs on the sender pool
+    private void later(Runnable task, long delayMillis) {
+        scheduler.schedule(() -> sender.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // One request, with its outcome fed to the circuit breaker under the permit it was sent with
+    private CompletableFuture<String> guarded(Supplier<CompletableFuture<String>> request, long permit) {
+        CompletableFuture<String> sent;
+        try {
+            sent = request.get();
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.whenComplete((id, error) -> {
+            if (error != null && isRetryable(error)) {
+                circuitBreaker.onFailure(permit);
+            } else {
+                circuitBreaker.onSuccess(permit);
+            }
+        });
+    }
+
+    // Full jitter: a random wait up to the exponential bound
+    private long backoff(int attempt) {
+        long bound = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private PaymentProviderException rejected(String reason, String message) {
+        Counter.builder("payment.provider.rejected")
+            .description("Provider calls refused without being sent")
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+        return new PaymentProviderException(message, 0, true);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        Throwable cause = unwrap(error);
+        return !(cause instanceof PaymentProviderException failure) || failure.isRetryable();
+    }
+
+    private PaymentProviderException toProviderException(String operation, Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof PaymentProviderException failure) {
+            return failure;
+        }
+        if (cause instanceof TimeoutException) {
+            return new PaymentProviderException("Payment provider " + operation + " did not complete within "
+                + callTimeoutMillis + " ms", cause, true);
+        }
+        return new PaymentProviderException("Payment provider " + operation + " failed: " + cause.getMessage(),
+            cause, true);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
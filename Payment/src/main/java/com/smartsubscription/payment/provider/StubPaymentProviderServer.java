@@ -0,0 +1,262 @@
+package com.smartsubscription.payment.provider;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A stand-in for the payment provider, for running the service and measuring
+ * throughput and tail latency without network access or provider credentials. It
+ * answers the two calls {@link HttpPaymentProviderClient} makes with Stripe-shaped JSON.
+ * <p>
+ * Latency is log-normal, set by its median and 99th percentile. A share of requests
+ * fails with a 500 (error-rate), is declined with a 402 (decline-rate), or hangs for
+ * hang-ms, long enough to trip the client's timeout (hang-rate). The rates can be
+ * changed while it runs, to take the provider down and bring it back.
+ * <p>
+ * Idempotency-Key is honoured as the real API does: a request repeating the key of one
+ * that succeeded or was declined gets that same response again, the same id included;
+ * one arriving while the first is still being processed gets a 409. Simulated 500s
+ * are not remembered, so a retry can succeed. Started inside the Payment service with
+ * payment.provider.stub.enabled, or on its own through main.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.provider.stub.enabled", havingValue = "true")
+@Slf4j
+public class StubPaymentProviderServer implements InitializingBean, DisposableBean {
+
+    // z-score of the 99th percentile of a standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    // Keys remembered; the oldest are forgotten first
+    private static final int MAX_KEYS = 100_000;
+
+    private final int port;
+    private final int threads;
+    private final double medianMillis;
+    private final double sigma;
+    private final long hangMillis;
+    private final Map<String, Response> responses = Collections.synchronizedMap(
+        new LinkedHashMap<String, Response>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+                return size() > MAX_KEYS;
+            }
+        });
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    private volatile double errorRate;
+    private volatile double declineRate;
+    private volatile double hangRate;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public StubPaymentProviderServer(@Value("${payment.provider.stub.port:12111}") int port,
+                                     @Value("${payment.provider.stub.threads:200}") int threads,
+                                     @Value("${payment.provider.stub.latency-median-ms:150}") double medianMillis,
+                                     @Value("${payment.provider.stub.latency-p99-ms:800}") double p99Millis,
+                                     @Value("${payment.provider.stub.error-rate:0.01}") double errorRate,
+                                     @Value("${payment.provider.stub.decline-rate:0.02}") double declineRate,
+                                     @Value("${payment.provider.stub.hang-rate:0}") double hangRate,
+                                     @Value("${payment.provider.stub.hang-ms:30000}") long hangMillis) {
+        this.port = port;
+        this.threads = threads;
+        this.medianMillis = medianMillis;
+        this.sigma = p99Millis > medianMillis && medianMillis > 0 ? Math.log(p99Millis / medianMillis) / Z_99 : 0;
+        this.errorRate = errorRate;
+        this.declineRate = declineRate;
+        this.hangRate = hangRate;
+        this.hangMillis = hangMillis;
+    }
+
+    // Standalone: port, median ms and p99 ms as optional arguments
+    public static void main(String[] args) throws IOException {
+        StubPaymentProviderServer stub = new StubPaymentProviderServer(
+            args.length > 0 ? Integer.parseInt(args[0]) : 12111, 200,
+            args.length > 1 ? Double.parseDouble(args[1]) : 150,
+            args.length > 2 ? Double.parseDouble(args[2]) : 800,
+            0.01, 0.02, 0, 30000);
+        stub.afterPropertiesSet();
+    }
+
+    // The port actually bound, when constructed with port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setDeclineRate(double declineRate) {
+        this.declineRate = declineRate;
+    }
+
+    public void setHangRate(double hangRate) {
+        this.hangRate = hangRate;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        // Every request sleeps out its latency on its own thread, so threads bounds the stub's concurrency
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "stub-payment-provider");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/v1/payment_intents", exchange -> handle(exchange, "pi_"));
+        server.createContext("/v1/refunds", exchange -> handle(exchange, "re_"));
+        server.setExecutor(executor);
+        server.start();
+        log.info("Stub payment provider listening on port {} (median {} ms, sigma {})",
+            getPort(), medianMillis, String.format("%.2f", sigma));
+    }
+
+    @Override
+    public void destroy() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange, String idPrefix) throws IOException {
+        try (exchange) {
+            String form;
+            try (InputStream body = exchange.getRequestBody()) {
+                form = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("invalid_request_error", "Only POST is supported"));
+                return;
+            }
+            // Like the real API, a confirmed intent needs a payment method (or a customer, which is never sent)
+            if ("pi_".equals(idPrefix) && !hasField(form, "payment_method")) {
+                respond(exchange, 400, error("invalid_request_error", "Missing required param: payment_method."));
+                return;
+            }
+
+            String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            Response response = key == null ? process(idPrefix) : processOnce(key, idPrefix);
+            if (response.replayed) {
+                exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
+            }
+            respond(exchange, response.status, response.body);
+        }
+    }
+
+    private Response processOnce(String key, String idPrefix) {
+        Response stored = responses.get(key);
+        if (stored != null) {
+            return stored.replay();
+        }
+        if (!inProgress.add(key)) {
+            return new Response(409, error("idempotency_error",
+                "There is currently another in-progress request using this Idempotency-Key."), false);
+        }
+        try {
+            // The first request may have finished between the lookup and the claim
+            stored = responses.get(key);
+            if (stored != null) {
+                return stored.replay();
+            }
+            Response response = process(idPrefix);
+            if (response.status != 500) {
+                responses.put(key, response);
+            }
+            return response;
+        } finally {
+            inProgress.remove(key);
+        }
+    }
+
+    // Sleeps out the simulated latency, then decides the outcome
+    private Response process(String idPrefix) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        sleep(roll < hangRate ? hangMillis : latencyMillis(random));
+
+        if (roll < hangRate + errorRate) {
+            return new Response(500, error("api_error", "Simulated provider error"), false);
+        }
+        if (roll < hangRate + errorRate + declineRate) {
+            return new Response(402, error("card_error", "Your card was declined."), false);
+        }
+        String id = idPrefix + UUID.randomUUID().toString().replace("-", "").substring(0, 24);
+        return new Response(200, "{\"id\":\"" + id + "\",\"status\":\"succeeded\"}", false);
+    }
+
+    private static boolean hasField(String form, String name) {
+        for (String pair : form.split("&")) {
+            if (pair.startsWith(name + "=") && pair.length() > name.length() + 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long latencyMillis(ThreadLocalRandom random) {
+        return Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    private static String error(String type, String message) {
+        return "{\"error\":{\"type\":\"" + type + "\",\"message\":\"" + message + "\"}}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Response {
+
+        private final int status;
+        private final String body;
+        private final boolean replayed;
+
+        private Response(int status, String body, boolean replayed) {
+            this.status = status;
+            this.body = body;
+            this.replayed = replayed;
+        }
+
+        private Response replay() {
+            return new Response(status, body, true);
+        }
+    }
+}
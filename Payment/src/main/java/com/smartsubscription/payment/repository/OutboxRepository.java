@@ -0,0 +1,79 @@
+package com.smartsubscription.payment.repository;
+
+import com.smartsubscription.payment.entity.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+
+    private static final String INSERT =
+        "INSERT INTO outbox_events (topic, message_key, payload) VALUES (?, ?, ?)";
+
+    // Arbitrary, but the same on every instance
+    private static final long RELAY_LOCK_KEY = 0x6f7574626f78L;
+
+    // Held until the relay transaction ends; only one instance relays at a time
+    private static final String TRY_LOCK_RELAY =
+        "SELECT pg_try_advisory_xact_lock(?)";
+
+    // Only events whose writing transaction ended before every one still running
+    private static final String CLAIM_BATCH =
+        "SELECT id, topic, message_key, payload, created_at, attempts FROM outbox_events " +
+        "WHERE status = 'PENDING' AND tx_id < pg_snapshot_xmin(pg_current_snapshot()) " +
+        "ORDER BY tx_id, id LIMIT ?";
+
+    private static final String RECORD_FAILURE =
+        "UPDATE outbox_events SET attempts = attempts + 1, last_error = ?, " +
+        "status = CASE WHEN attempts + 1 >= ? THEN 'FAILED' ELSE status END, " +
+        "failed_at = CASE WHEN attempts + 1 >= ? THEN now() ELSE failed_at END " +
+        "WHERE id = ? RETURNING status";
+
+    private static final String DELETE =
+        "DELETE FROM outbox_events WHERE id IN (%s)";
+
+    private static final RowMapper<OutboxEvent> EVENT_ROW_MAPPER = (rs, rowNum) -> new OutboxEvent(
+        rs.getLong("id"),
+        rs.getString("topic"),
+        rs.getString("message_key"),
+        rs.getString("payload"),
+        rs.getTimestamp("created_at").toLocalDateTime(),
+        rs.getInt("attempts"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insert(String topic, String key, String payload) {
+        jdbcTemplate.update(INSERT, topic, key, payload);
+    }
+
+    // False when another instance is relaying; must run inside the relay transaction
+    public boolean tryLockRelay() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(TRY_LOCK_RELAY, Boolean.class, RELAY_LOCK_KEY));
+    }
+
+    // The oldest events that are safe to relay now
+    public List<OutboxEvent> claimBatch(int limit) {
+        return jdbcTemplate.query(CLAIM_BATCH, EVENT_ROW_MAPPER, limit);
+    }
+
+    // Counts a failed send; returns true when that was the last attempt and the event is now FAILED
+    public boolean recordFailure(long id, String error, int maxAttempts) {
+        String status = jdbcTemplate.queryForObject(RECORD_FAILURE, String.class, error, maxAttempts, maxAttempts, id);
+        return "FAILED".equals(status);
+    }
+
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(String.format(DELETE, String.join(", ", Collections.nCopies(ids.size(), "?"))),
+            ids.toArray());
+    }
+}
@@ -1,17 +1,34 @@
 package com.smartsubscription.payment.repository;
 import com.smartsubscription.payment.entity.Payment;
+import com.smartsubscription.payment.entity.PaymentResponse;
+import com.smartsubscription.payment.entity.PaymentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     
+    String RESPONSE_SELECT = "SELECT new com.smartsubscription.payment.entity.PaymentResponse(" +
+        "p.id, p.userId, p.subscriptionId, p.amount, p.status, p.transactionId, p.createdAt) FROM Payment p ";
+    
     List<Payment> findByUserId(String userId);
     
+    // The list read path builds responses straight from the columns, without managed entities
+    @Query(RESPONSE_SELECT + "WHERE p.userId = :userId")
+    List<PaymentResponse> findResponsesByUserId(@Param("userId") String userId);
+    
     List<Payment> findBySubscriptionId(String subscriptionId);
     
     List<Payment> findByUserIdAndStatus(String userId, String status);
-}
\ No newline at end of file
+    
+    Optional<Payment> findByRenewalChargeId(String renewalChargeId);
+    
+    Optional<Payment> findFirstByUserIdAndSubscriptionIdAndStatusOrderByCreatedAtDesc(
+        String userId, String subscriptionId, PaymentStatus status);
+}
@@ -0,0 +1,37 @@
+package com.smartsubscription.payment.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Notifications go out through the outbox, committed with the payment they describe
+@Service
+@Primary
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxNotificationService implements NotificationService {
+
+    private final PaymentOutbox outbox;
+
+    @Override
+    public void sendNotification(String userId, String type, String title,
+                                 String message, Map<String, Object> data) {
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("type", type);
+        notification.put("title", title);
+        notification.put("message", message);
+        notification.put("userId", userId);
+        notification.put("timestamp", System.currentTimeMillis());
+
+        if (data != null) {
+            notification.put("data", data);
+        }
+
+        outbox.enqueue("notifications", userId, notification);
+        log.debug("Notification queued for user: {}, type: {}", userId, type);
+    }
+}
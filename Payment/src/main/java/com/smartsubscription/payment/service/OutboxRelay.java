@@ -0,0 +1,206 @@
+package com.smartsubscription.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.payment.entity.OutboxEvent;
+import com.smartsubscription.payment.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains outbox_events to Kafka, a batch per transaction. One instance relays at a
+ * time, holding a transaction-scoped advisory lock, and it only takes events whose
+ * writing transaction is older than every transaction still running, ordered by that
+ * transaction and then id: an event committed late cannot be overtaken by one relayed
+ * earlier, so each key's events reach Kafka in the order they were written (an event
+ * Kafka refused and that is retried later being the exception).
+ * <p>
+ * Every message in a batch is sent, then each acknowledgement awaited; acknowledged
+ * events are deleted. A send that fails because the broker is unavailable or slow is
+ * left for the next poll, so delivery is at least once. A send Kafka refuses outright
+ * (too large, unserializable) is counted against the event, and after
+ * payment.outbox.max-attempts the event is marked FAILED and no longer relayed, so one
+ * bad row cannot hold the outbox up forever. Unreadable payloads fail at once.
+ * <p>
+ * Meters: payment.outbox.published (by topic), payment.outbox.failures,
+ * payment.outbox.dead, payment.outbox.batch.size and payment.outbox.lag, the age in
+ * milliseconds of the oldest event seen by the last poll.
+ */
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Counter failures;
+    private final Counter dead;
+    private final DistributionSummary batchSizes;
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    @Value("${payment.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${payment.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMillis;
+
+    @Value("${payment.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       KafkaTemplate<String, Object> kafkaTemplate,
+                       TransactionTemplate transactionTemplate,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.failures = Counter.builder("payment.outbox.failures")
+            .description("Outbox events whose send failed")
+            .register(meterRegistry);
+        this.dead = Counter.builder("payment.outbox.dead")
+            .description("Outbox events marked FAILED and no longer relayed")
+            .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("payment.outbox.batch.size")
+            .description("Events relayed per batch")
+            .register(meterRegistry);
+        Gauge.builder("payment.outbox.lag", lagMillis, AtomicLong::get)
+            .description("Age in milliseconds of the oldest unsent outbox event")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    // Keeps going while batches come back full, then waits for the next poll
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval-ms:200}")
+    public void relay() {
+        try {
+            int relayed;
+            do {
+                Integer count = transactionTemplate.execute(status -> relayBatch());
+                relayed = count == null ? 0 : count;
+            } while (relayed == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Outbox relay failed, retrying on the next poll: {}", e.getMessage());
+        }
+    }
+
+    // Returns how many events were delivered; anything short of a full batch ends the drain
+    private int relayBatch() {
+        if (!outboxRepository.tryLockRelay()) {
+            return 0;
+        }
+        List<OutboxEvent> batch = outboxRepository.claimBatch(batchSize);
+        if (batch.isEmpty()) {
+            lagMillis.set(0);
+            return 0;
+        }
+        lagMillis.set(Math.max(0, Duration.between(batch.get(0).getCreatedAt(), LocalDateTime.now()).toMillis()));
+
+        // Send everything first, then wait, so the batch costs one round of acknowledgements
+        List<OutboxEvent> sent = new ArrayList<>(batch.size());
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            JsonNode payload;
+            try {
+                payload = objectMapper.readTree(event.getPayload());
+            } catch (IOException e) {
+                fail(event, "Unreadable payload: " + e.getMessage(), 1);
+                continue;
+            }
+            CompletableFuture<SendResult<String, Object>> send;
+            try {
+                send = kafkaTemplate.send(event.getTopic(), event.getMessageKey(), payload);
+            } catch (RuntimeException e) {
+                send = CompletableFuture.failedFuture(e);
+            }
+            sent.add(event);
+            sends.add(send);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        List<Long> delivered = new ArrayList<>(sent.size());
+        for (int i = 0; i < sent.size(); i++) {
+            OutboxEvent event = sent.get(i);
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(event.getId());
+                published(event.getTopic()).increment();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (isTransient(cause)) {
+                    failures.increment();
+                    log.warn("Kafka did not take outbox event {}, retrying on the next poll: {}",
+                        event.getId(), cause.getMessage());
+                } else {
+                    fail(event, cause.getMessage(), maxAttempts);
+                }
+            } catch (TimeoutException e) {
+                failures.increment();
+                log.warn("Kafka did not acknowledge outbox event {} within {} ms, retrying on the next poll",
+                    event.getId(), sendTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        outboxRepository.delete(delivered);
+        batchSizes.record(delivered.size());
+        log.debug("Relayed {} of {} outbox events", delivered.size(), batch.size());
+        return delivered.size();
+    }
+
+    private void fail(OutboxEvent event, String error, int attemptsAllowed) {
+        failures.increment();
+        if (outboxRepository.recordFailure(event.getId(), error, attemptsAllowed)) {
+            dead.increment();
+            log.error("Outbox event {} to {} marked FAILED after {} attempts: {}",
+                event.getId(), event.getTopic(), event.getAttempts() + 1, error);
+        } else {
+            log.warn("Kafka refused outbox event {} (attempt {} of {}): {}",
+                event.getId(), event.getAttempts() + 1, attemptsAllowed, error);
+        }
+    }
+
+    // Broker outages and slowness say nothing about the event itself, so they are not counted against it
+    private static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Counter published(String topic) {
+        return Counter.builder("payment.outbox.published")
+            .description("Outbox events acknowledged by Kafka")
+            .tag("topic", topic)
+            .register(meterRegistry);
+    }
+}
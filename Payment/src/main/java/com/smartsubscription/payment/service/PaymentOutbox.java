@@ -0,0 +1,28 @@
+package com.smartsubscription.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.payment.repository.OutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Queues a Kafka message in outbox_events as part of the caller's transaction, so it
+ * is sent if and only if that transaction commits. {@link OutboxRelay} does the
+ * sending; nothing here waits on the broker.
+ */
+@Service
+@RequiredArgsConstructor
+public class PaymentOutbox {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    public void enqueue(String topic, String key, Object message) {
+        try {
+            outboxRepository.insert(topic, key, objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize message for " + topic, e);
+        }
+    }
+}
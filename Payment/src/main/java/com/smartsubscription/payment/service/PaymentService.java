@@ -1,9 +1,12 @@
 package com.smartsubscription.payment.service;
 
+import com.smartsubscription.data.retry.OptimisticRetryExecutor;
 import com.smartsubscription.payment.entity.Payment;
 import com.smartsubscription.payment.entity.PaymentRequest;
 import com.smartsubscription.payment.entity.PaymentResponse;
 import com.smartsubscription.payment.entity.PaymentStatus;
+import com.smartsubscription.payment.provider.PaymentProviderClient;
+import com.smartsubscription.payment.provider.PaymentProviderException;
 import com.smartsubscription.payment.repository.PaymentRepository;
 import com.smartsubscription.subscription.entity.Subscription;
 import com.smartsubscription.subscription.entity.SubscriptionStatus;
@@ -15,100 +18,122 @@ import org.springframework.http.*;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentService {
 
+    // Consumed by the subscription service's per-user read cache
+    private static final String SUBSCRIPTION_INVALIDATIONS_TOPIC = "subscription-cache-invalidations";
+
     private final PaymentRepository paymentRepository;
     private final SubscriptionRepository subscriptionRepository;
-    private final RestTemplate restTemplate;
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final NotificationService notificationService; // Add this line
-
-    @Value("${payment.provider.url}")
-    private String paymentProviderUrl;
-
-    @Value("${payment.provider.api-key}")
-    private String paymentProviderApiKey;
+    private final PaymentOutbox outbox;
+    private final OptimisticRetryExecutor optimisticRetry;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentProviderClient paymentProviderClient;
 
     @Value("${notification.service.url}")
     private String notificationServiceUrl;
 
     /**
-     * Process payment and update subscription status
+     * Process payment and update subscription status. The provider call runs outside
+     * any transaction: the PENDING payment is committed first and the result is
+     * written in a second short transaction, so no connection is held while waiting
+     * on the provider. When the provider gives no final answer (timeout, outage, open
+     * circuit) the payment stays PENDING and the caller gets a 503 or 504; retrying
+     * resumes that payment under the same provider idempotency key rather than
+     * starting a second charge.
      */
-    @Transactional
     public PaymentResponse doPayment(String userId, PaymentRequest request) {
         log.info("Processing payment for user: {}, subscription: {}", userId, request.getSubscriptionId());
 
         // Step 1: Validate subscription exists and belongs to user
         Subscription subscription = validateSubscription(userId, request.getSubscriptionId());
 
-        // Step 2: Create payment record
-        Payment payment = Payment.builder()
-                .userId(userId)
-                .subscriptionId(request.getSubscriptionId())
-                .amount(request.getAmount())
-                .status(PaymentStatus.PENDING)
-                .build();
-
-        payment = paymentRepository.save(payment);
-
+        // Step 2: Create payment record, or resume one whose charge never got a final answer
+        Payment pending = findUnsettledPayment(userId, request).orElseGet(() ->
+                transactionTemplate.execute(status -> paymentRepository.save(Payment.builder()
+                        .userId(userId)
+                        .subscriptionId(request.getSubscriptionId())
+                        .amount(request.getAmount())
+                        .paymentMethodToken(request.getPaymentMethodToken())
+                        .status(PaymentStatus.PENDING)
+                        .build())));
+
+        // Step 3: Call external payment provider
+        String transactionId;
         try {
-            // Step 3: Call external payment provider
-            String transactionId = callPaymentProvider(request.getPaymentMethodToken(), request.getAmount());
-
-            // Step 4: Update payment status
-            payment.setStatus(PaymentStatus.SUCCEEDED);
-            payment.setTransactionId(transactionId);
-            paymentRepository.save(payment);
-
-            // Step 5: DIRECTLY update subscription status to ACTIVE using repository
-            updateSubscriptionStatus(subscription, SubscriptionStatus.ACTIVE);
-
-            // Step 6: Send notification
-            sendPaymentSuccessNotification(userId, payment, subscription);
-
-            // Step 7: Publish payment success event (optional - if using Kafka)
-            publishPaymentSuccessEvent(userId, payment.getId().toString(),
-                    request.getSubscriptionId(), request.getAmount());
-
-            log.info("Payment successful for user: {}, paymentId: {}", userId, payment.getId());
-
-            return buildPaymentResponse(payment);
-
+            transactionId = callPaymentProvider(pending.getId(), request.getPaymentMethodToken(), request.getAmount());
         } catch (Exception e) {
+            if (e instanceof PaymentProviderException failure && failure.isRetryable()) {
+                // The charge may still go through; leave the payment and subscription as they are
+                log.warn("Payment {} for user: {} left pending: {}", pending.getId(), userId, failure.getMessage());
+                throw providerUnavailable(failure);
+            }
+
             // Step 8: Handle payment failure
-            payment.setStatus(PaymentStatus.FAILED);
-            paymentRepository.save(payment);
+            transactionTemplate.executeWithoutResult(status -> {
+                pending.setStatus(PaymentStatus.FAILED);
+                Payment failed = paymentRepository.save(pending);
+                sendPaymentFailureNotification(userId, failed, subscription, e.getMessage());
+            });
 
             // Update subscription status to PAUSED
             updateSubscriptionStatus(subscription, SubscriptionStatus.PAUSED);
 
-            // Send failure notification
-            sendPaymentFailureNotification(userId, payment, subscription, e.getMessage());
-
             log.error("Payment failed for user: {}, subscription: {}",
                     userId, request.getSubscriptionId(), e);
 
             throw new RuntimeException("Payment processing failed: " + e.getMessage());
         }
+
+        // Step 4: Update payment status; notification and event commit with it
+        Payment payment = transactionTemplate.execute(status -> {
+            pending.setStatus(PaymentStatus.SUCCEEDED);
+            pending.setTransactionId(transactionId);
+            Payment succeeded = paymentRepository.save(pending);
+
+            // Step 6: Send notification
+            sendPaymentSuccessNotification(userId, succeeded, subscription);
+
+            // Step 7: Queue payment success event; relayed to Kafka once this transaction commits
+            publishPaymentSuccessEvent(userId, succeeded.getId().toString(),
+                    request.getSubscriptionId(), request.getAmount());
+            return succeeded;
+        });
+
+        // Step 5: DIRECTLY update subscription status to ACTIVE using repository
+        updateSubscriptionStatus(subscription, SubscriptionStatus.ACTIVE);
+
+        log.info("Payment successful for user: {}, paymentId: {}", userId, payment.getId());
+
+        return buildPaymentResponse(payment);
     }
 
     /**
-     * Cancel payment and process refund with 1% deduction
+     * Cancel payment and process refund with 1% deduction. Like doPayment, the
+     * provider call sits between two short transactions.
      */
-    @Transactional
     public PaymentResponse cancelPayment(String userId, String paymentId) {
         log.info("Processing cancellation for payment: {}, user: {}", paymentId, userId);
 
@@ -140,33 +165,98 @@ public class PaymentService {
                     .setScale(2, RoundingMode.HALF_UP);
 
             // Step 3: Process refund with payment provider
-            String refundTransactionId = callRefundProvider(payment.getTransactionId(), refundAmount);
+            String refundTransactionId = callRefundProvider(payment.getId(), payment.getTransactionId(), refundAmount);
 
-            // Step 4: Update payment record
-            payment.setStatus(PaymentStatus.REFUNDED);
-            payment.setRefundAmount(refundAmount);
-            payment.setRefundTransactionId(refundTransactionId);
-            paymentRepository.save(payment);
+            // Step 4: Update payment record; notification and event commit with it
+            Payment refunded = transactionTemplate.execute(status -> {
+                payment.setStatus(PaymentStatus.REFUNDED);
+                payment.setRefundAmount(refundAmount);
+                payment.setRefundTransactionId(refundTransactionId);
+                Payment saved = paymentRepository.save(payment);
 
-            // Step 5: DIRECTLY update subscription status to PENDING using repository
-            updateSubscriptionStatus(subscription, SubscriptionStatus.PENDING);
+                // Step 6: Send refund notification
+                sendRefundNotification(userId, saved, subscription, refundAmount);
 
-            // Step 6: Send refund notification
-            sendRefundNotification(userId, payment, subscription, refundAmount);
+                // Step 7: Queue refund event; relayed to Kafka once this transaction commits
+                publishRefundEvent(userId, paymentId, saved.getSubscriptionId(), refundAmount);
+                return saved;
+            });
 
-            // Step 7: Publish refund event (optional - if using Kafka)
-            publishRefundEvent(userId, paymentId, payment.getSubscriptionId(), refundAmount);
+            // Step 5: DIRECTLY update subscription status to PENDING using repository
+            updateSubscriptionStatus(subscription, SubscriptionStatus.PENDING);
 
             log.info("Payment cancelled and refund processed for payment: {}", paymentId);
 
-            return buildPaymentResponse(payment);
+            return buildPaymentResponse(refunded);
 
         } catch (Exception e) {
             log.error("Refund failed for payment: {}", paymentId, e);
+            if (e instanceof PaymentProviderException failure && failure.isRetryable()) {
+                // Nothing was recorded; a retry sends the refund again under the same key
+                throw providerUnavailable(failure);
+            }
             throw new RuntimeException("Refund processing failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Charge a renewed billing period on the customer's payment method on file.
+     * Idempotent per renewal charge: a charge that already has a result is returned
+     * as is, so redelivered or resubmitted requests never charge twice. The provider
+     * call runs between two short transactions, as in doPayment. A charge the provider
+     * gave no final answer to is returned still PENDING, and the next delivery of the
+     * request retries it under the same idempotency key.
+     */
+    public Payment chargeRenewal(String chargeId, String userId, String subscriptionId, BigDecimal amount) {
+        Payment existing = paymentRepository.findByRenewalChargeId(chargeId).orElse(null);
+        if (existing != null && existing.getStatus() != PaymentStatus.PENDING) {
+            log.info("Renewal charge {} already processed as payment {}", chargeId, existing.getId());
+            return existing;
+        }
+
+        Payment pending = existing != null ? existing : transactionTemplate.execute(status ->
+                paymentRepository.save(Payment.builder()
+                        .userId(userId)
+                        .subscriptionId(subscriptionId)
+                        .amount(amount)
+                        .status(PaymentStatus.PENDING)
+                        .renewalChargeId(chargeId)
+                        .build()));
+
+        String transactionId;
+        try {
+            // Renewal requests carry no token; the provider client fails them as declined until
+            // customers with a saved payment method are stored
+            transactionId = callPaymentProvider(pending.getId(), null, amount);
+        } catch (Exception e) {
+            if (e instanceof PaymentProviderException failure && failure.isRetryable()) {
+                log.warn("Renewal charge {} left pending for subscription: {}: {}",
+                        chargeId, subscriptionId, failure.getMessage());
+                return pending;
+            }
+            Payment failed = transactionTemplate.execute(status -> {
+                pending.setStatus(PaymentStatus.FAILED);
+                Payment saved = paymentRepository.save(pending);
+                sendRenewalNotification(saved, e.getMessage());
+                return saved;
+            });
+            log.error("Renewal charge {} failed for subscription: {}", chargeId, subscriptionId, e);
+            return failed;
+        }
+
+        Payment payment = transactionTemplate.execute(status -> {
+            pending.setStatus(PaymentStatus.SUCCEEDED);
+            pending.setTransactionId(transactionId);
+            Payment saved = paymentRepository.save(pending);
+
+            publishPaymentSuccessEvent(userId, saved.getId().toString(), subscriptionId, amount);
+            sendRenewalNotification(saved, null);
+            return saved;
+        });
+        log.info("Renewal charge {} succeeded for subscription: {}", chargeId, subscriptionId);
+        return payment;
+    }
+
     // ========== NOTIFICATION METHODS ==========
 
     private void sendPaymentSuccessNotification(String userId, Payment payment, Subscription subscription) {
@@ -235,6 +325,32 @@ public class PaymentService {
         }
     }
 
+    private void sendRenewalNotification(Payment payment, String errorMessage) {
+        try {
+            boolean succeeded = errorMessage == null;
+            Map<String, Object> notificationData = new HashMap<>();
+            notificationData.put("paymentId", payment.getId().toString());
+            notificationData.put("amount", payment.getAmount());
+            notificationData.put("subscriptionId", payment.getSubscriptionId());
+            if (!succeeded) {
+                notificationData.put("error", errorMessage);
+            }
+
+            notificationService.sendNotification(
+                    payment.getUserId(),
+                    succeeded ? "PAYMENT_SUCCESS" : "PAYMENT_FAILED",
+                    succeeded ? "Subscription Renewed" : "Renewal Payment Failed",
+                    succeeded
+                            ? String.format("Your subscription has been renewed and $%.2f was charged.", payment.getAmount())
+                            : String.format("We could not charge $%.2f to renew your subscription. Please update your payment method.",
+                                    payment.getAmount()),
+                    notificationData
+            );
+        } catch (Exception e) {
+            log.error("Failed to send renewal notification: {}", e.getMessage());
+        }
+    }
+
     // ========== REST OF YOUR METHODS (KEEP THEM AS IS) ==========
 
     private Subscription validateSubscription(String userId, String subscriptionId) {
@@ -248,10 +364,16 @@ public class PaymentService {
         return subscription;
     }
 
+    // Re-reads the subscription in its own transaction, so a concurrent change is retried instead of overwritten
     private void updateSubscriptionStatus(Subscription subscription, SubscriptionStatus status) {
         try {
-            subscription.setStatus(status);
-            subscriptionRepository.save(subscription);
+            optimisticRetry.run("payment-status", () -> {
+                Subscription current = subscriptionRepository.findById(subscription.getId())
+                        .orElseThrow(() -> new RuntimeException("Subscription not found: " + subscription.getId()));
+                current.setStatus(status);
+                subscriptionRepository.save(current);
+                publishSubscriptionCacheInvalidation(current.getUserId());
+            });
             log.info("Subscription {} status updated to {}", subscription.getId(), status);
         } catch (Exception e) {
             log.error("Failed to update subscription status for subscription: {}",
@@ -259,29 +381,69 @@ public class PaymentService {
         }
     }
 
-    private String callPaymentProvider(String paymentMethodToken, BigDecimal amount) {
-        // Mock payment provider integration
-        log.info("Processing payment with token: {}, amount: {}", paymentMethodToken, amount);
-
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    // The subscription service caches subscriptions per user; tell it once this change commits
+    private void publishSubscriptionCacheInvalidation(String userId) {
+        Runnable publish = () -> {
+            try {
+                Map<String, Object> message = new HashMap<>();
+                message.put("userIds", List.of(userId));
+                message.put("origin", "payment");
+                message.put("timestamp", System.currentTimeMillis());
+                kafkaTemplate.send(SUBSCRIPTION_INVALIDATIONS_TOPIC, userId, message);
+            } catch (Exception e) {
+                log.error("Failed to publish subscription cache invalidation for user: {}", userId, e);
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish.run();
+                }
+            });
+        } else {
+            publish.run();
         }
+    }
+
+    // The latest charge with the same subscription, amount and payment method that never got a final
+    // answer; its provider key may only be reused with the parameters it was first sent with
+    private Optional<Payment> findUnsettledPayment(String userId, PaymentRequest request) {
+        return paymentRepository.findFirstByUserIdAndSubscriptionIdAndStatusOrderByCreatedAtDesc(
+                        userId, request.getSubscriptionId(), PaymentStatus.PENDING)
+                .filter(payment -> payment.getRenewalChargeId() == null
+                        && payment.getAmount().compareTo(request.getAmount()) == 0
+                        && Objects.equals(payment.getPaymentMethodToken(), request.getPaymentMethodToken()));
+    }
 
-        return "txn_" + UUID.randomUUID().toString().substring(0, 16);
+    private static ResponseStatusException providerUnavailable(PaymentProviderException failure) {
+        return new ResponseStatusException(
+                failure.isTimeout() ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.SERVICE_UNAVAILABLE,
+                "Payment provider did not answer, please retry: " + failure.getMessage());
     }
 
-    private String callRefundProvider(String transactionId, BigDecimal amount) {
+    // The payment id keys the call at the provider, so a retried charge is not taken twice
+    private String callPaymentProvider(UUID paymentId, String paymentMethodToken, BigDecimal amount) {
+        log.info("Charging payment {}, amount: {}", paymentId, amount);
+        return await(paymentProviderClient.charge(paymentMethodToken, amount, "charge-" + paymentId));
+    }
+
+    private String callRefundProvider(UUID paymentId, String transactionId, BigDecimal amount) {
         log.info("Processing refund for transaction: {}, amount: {}", transactionId, amount);
+        return await(paymentProviderClient.refund(transactionId, amount, "refund-" + paymentId));
+    }
 
+    // The client bounds how long a call takes, so waiting on it here cannot hang
+    private static String await(CompletableFuture<String> call) {
         try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
-
-        return "ref_" + UUID.randomUUID().toString().substring(0, 16);
     }
 
     private void publishPaymentSuccessEvent(String userId, String paymentId,
@@ -295,10 +457,10 @@ public class PaymentService {
             event.put("amount", amount);
             event.put("timestamp", System.currentTimeMillis());
 
-            kafkaTemplate.send("payment-events", userId, event);
-            log.debug("Payment success event published for user: {}", userId);
+            outbox.enqueue("payment-events", userId, event);
+            log.debug("Payment success event queued for user: {}", userId);
         } catch (Exception e) {
-            log.error("Failed to publish payment success event", e);
+            log.error("Failed to queue payment success event", e);
         }
     }
 
@@ -313,10 +475,10 @@ public class PaymentService {
             event.put("refundAmount", refundAmount);
             event.put("timestamp", System.currentTimeMillis());
 
-            kafkaTemplate.send("payment-events", userId, event);
-            log.debug("Refund event published for user: {}", userId);
+            outbox.enqueue("payment-events", userId, event);
+            log.debug("Refund event queued for user: {}", userId);
         } catch (Exception e) {
-            log.error("Failed to publish refund event", e);
+            log.error("Failed to queue refund event", e);
         }
     }
 
@@ -332,6 +494,8 @@ public class PaymentService {
                 .build();
     }
 
+    // By primary key the entity is cheaper than a projection query; read-only, it keeps no snapshot
+    @Transactional(readOnly = true)
     public PaymentResponse getPayment(String userId, String paymentId) {
         Payment payment = paymentRepository.findById(UUID.fromString(paymentId))
                 .orElseThrow(() -> new RuntimeException("Payment not found"));
@@ -343,9 +507,8 @@ public class PaymentService {
         return buildPaymentResponse(payment);
     }
 
+    @Transactional(readOnly = true)
     public PaymentResponse[] getUserPayments(String userId) {
-        return paymentRepository.findByUserId(userId).stream()
-                .map(this::buildPaymentResponse)
-                .toArray(PaymentResponse[]::new);
+        return paymentRepository.findResponsesByUserId(userId).toArray(PaymentResponse[]::new);
     }
 }
\ No newline at end of file
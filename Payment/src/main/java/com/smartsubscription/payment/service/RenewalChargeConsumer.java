@@ -0,0 +1,71 @@
+package com.smartsubscription.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.payment.entity.Payment;
+import com.smartsubscription.payment.entity.PaymentStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Charges renewals requested by the subscription service and reports each final
+ * result back; a charge still pending at the provider is left for the resubmit sweep.
+ * How many charges run at once is bounded by the listener concurrency here and by the
+ * subscription service's in-flight limit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RenewalChargeConsumer {
+
+    private static final String RESULTS_TOPIC = "renewal-charge-results";
+
+    private final PaymentService paymentService;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    @KafkaListener(topics = "renewal-charges", groupId = "payment-renewals",
+            concurrency = "${payment.renewals.concurrency:3}")
+    public void onRenewalCharge(String message) {
+        Map<?, ?> request;
+        try {
+            request = objectMapper.readValue(message, Map.class);
+        } catch (IOException e) {
+            log.error("Skipping unreadable renewal charge: {}", message, e);
+            return;
+        }
+
+        String chargeId = (String) request.get("chargeId");
+        String userId = (String) request.get("userId");
+        Payment payment = paymentService.chargeRenewal(
+                chargeId,
+                userId,
+                (String) request.get("subscriptionId"),
+                new BigDecimal(request.get("amount").toString()));
+        if (payment.getStatus() == PaymentStatus.PENDING) {
+            // No final answer from the provider; the subscription service resubmits the charge later
+            log.warn("Renewal charge {} still pending, not reporting a result", chargeId);
+            return;
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("chargeId", chargeId);
+        result.put("userId", userId);
+        result.put("paymentId", payment.getId().toString());
+        result.put("succeeded", payment.getStatus() == PaymentStatus.SUCCEEDED);
+        result.put("transactionId", payment.getTransactionId());
+        if (payment.getStatus() != PaymentStatus.SUCCEEDED) {
+            result.put("error", "Payment " + payment.getStatus());
+        }
+        result.put("timestamp", System.currentTimeMillis());
+
+        kafkaTemplate.send(RESULTS_TOPIC, userId, result);
+    }
+}
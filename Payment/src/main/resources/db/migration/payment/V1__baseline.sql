@@ -0,0 +1,55 @@
+-- Schema as previously created by ddl-auto; existing databases are baselined at this version
+
+CREATE TABLE payments (
+    id                    uuid          NOT NULL PRIMARY KEY,
+    user_id               varchar(255)  NOT NULL,
+    subscription_id       varchar(255)  NOT NULL,
+    amount                numeric(38,2) NOT NULL,
+    status                varchar(255)  NOT NULL,
+    transaction_id        varchar(255),
+    refund_amount         numeric(38,2),
+    refund_transaction_id varchar(255),
+    created_at            timestamp(6),
+    updated_at            timestamp(6)
+);
+
+-- PaymentService reads and updates subscriptions through the subscription module's
+-- repositories, which resolve against this database
+CREATE TABLE subscription_plans (
+    id             varchar(255) NOT NULL PRIMARY KEY,
+    code           varchar(255) NOT NULL,
+    name           varchar(255) NOT NULL,
+    description    varchar(255),
+    price          float(53)    NOT NULL,
+    currency       varchar(255) NOT NULL,
+    billing_cycle  varchar(255) NOT NULL,
+    trial_days     integer,
+    is_active      boolean,
+    max_users      integer,
+    max_projects   integer,
+    storage_limit  bigint,
+    api_rate_limit integer,
+    sort_order     integer,
+    created_at     timestamp(6),
+    CONSTRAINT uk_subscription_plans_code UNIQUE (code)
+);
+
+CREATE TABLE subscriptions (
+    id                  varchar(255) NOT NULL PRIMARY KEY,
+    user_id             varchar(255) NOT NULL,
+    plan_id             varchar(255) NOT NULL,
+    plan_name           varchar(255) NOT NULL,
+    status              varchar(255) NOT NULL,
+    start_date          timestamp(6) NOT NULL,
+    end_date            timestamp(6),
+    next_billing_date   timestamp(6),
+    trial_end_date      timestamp(6),
+    price               float(53)    NOT NULL,
+    currency            varchar(255) NOT NULL,
+    billing_cycle       varchar(255) NOT NULL,
+    trial_days          integer,
+    auto_renew          boolean,
+    cancellation_reason varchar(255),
+    created_at          timestamp(6),
+    updated_at          timestamp(6)
+);
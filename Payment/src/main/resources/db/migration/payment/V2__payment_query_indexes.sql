@@ -0,0 +1,15 @@
+-- Indexes for the payment history lookups. Built concurrently so the migration does not
+-- block writes on a live table; Flyway runs this script outside a transaction.
+
+-- findByUserId
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_user_created
+    ON payments (user_id, created_at);
+
+-- findByUserIdAndStatus
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_user_status
+    ON payments (user_id, status);
+
+-- findBySubscriptionId
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_subscription
+    ON payments (subscription_id);
+
@@ -0,0 +1,3 @@
+-- Optimistic-locking version for Subscription. Adding a column with a constant default
+-- does not rewrite the table.
+ALTER TABLE subscriptions ADD COLUMN version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,13 @@
+-- Idempotency-Key store used when idempotency.store is jdbc. status is null while the
+-- first request is still running.
+CREATE TABLE idempotency_keys (
+    idem_key     varchar(255) NOT NULL PRIMARY KEY,
+    fingerprint  varchar(64)  NOT NULL,
+    status       integer,
+    content_type varchar(255),
+    body         bytea,
+    created_at   timestamp(6) NOT NULL,
+    completed_at timestamp(6)
+);
+
+CREATE INDEX idx_idempotency_keys_created ON idempotency_keys (created_at);
@@ -0,0 +1,9 @@
+-- Kafka messages written in the transaction that produced them and relayed after it
+-- commits. id is the relay order; rows are deleted once the broker has acknowledged them.
+CREATE TABLE outbox_events (
+    id          bigserial    PRIMARY KEY,
+    topic       varchar(255) NOT NULL,
+    message_key varchar(255),
+    payload     text         NOT NULL,
+    created_at  timestamp(6) NOT NULL DEFAULT now()
+);
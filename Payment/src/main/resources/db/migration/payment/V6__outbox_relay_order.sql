@@ -0,0 +1,13 @@
+-- Relay order and dead events for the outbox.
+-- tx_id is the transaction that wrote the event. The relay only takes events whose
+-- transaction is older than every transaction still running, in (tx_id, id) order, so an
+-- event that commits late can never land behind one relayed before it. Events Kafka
+-- keeps rejecting are marked FAILED after payment.outbox.max-attempts and left for an
+-- operator; setting them back to PENDING sends them again.
+ALTER TABLE outbox_events ADD COLUMN tx_id xid8 NOT NULL DEFAULT pg_current_xact_id();
+ALTER TABLE outbox_events ADD COLUMN status varchar(16) NOT NULL DEFAULT 'PENDING';
+ALTER TABLE outbox_events ADD COLUMN attempts integer NOT NULL DEFAULT 0;
+ALTER TABLE outbox_events ADD COLUMN last_error text;
+ALTER TABLE outbox_events ADD COLUMN failed_at timestamp(6);
+
+CREATE INDEX idx_outbox_events_pending ON outbox_events (tx_id, id) WHERE status = 'PENDING';
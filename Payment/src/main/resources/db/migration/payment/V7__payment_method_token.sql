@@ -0,0 +1,4 @@
+-- The payment method a charge was sent with. A retried payment only resumes a PENDING
+-- charge made with the same one: the provider refuses an idempotency key reused with
+-- different parameters.
+ALTER TABLE payments ADD COLUMN payment_method_token varchar(255);
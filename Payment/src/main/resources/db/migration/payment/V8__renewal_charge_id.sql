@@ -0,0 +1,3 @@
+-- Charges requested by the subscription service's renewal job carry its charge id.
+-- New with this version, so databases baselined at V1 get it here; V9 indexes it.
+ALTER TABLE payments ADD COLUMN renewal_charge_id varchar(255);
@@ -0,0 +1,7 @@
+-- One payment per renewal charge; PaymentService deduplicates redelivered charges on it.
+-- Built concurrently so the migration does not block writes on a live table; Flyway runs
+-- this script outside a transaction. A build cut short leaves an invalid index behind,
+-- so any earlier copy is dropped first and a rerun builds it again.
+DROP INDEX CONCURRENTLY IF EXISTS uk_payments_renewal_charge;
+
+CREATE UNIQUE INDEX CONCURRENTLY uk_payments_renewal_charge ON payments (renewal_charge_id);
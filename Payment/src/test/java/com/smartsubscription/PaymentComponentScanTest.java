@@ -0,0 +1,38 @@
+package com.smartsubscription;
+
+import com.smartsubscription.controller.PaymentController;
+import com.smartsubscription.data.idempotency.IdempotencyService;
+import com.smartsubscription.data.retry.OptimisticRetryExecutor;
+import com.smartsubscription.payment.service.PaymentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The subscription module is a dependency for its entities and repositories; its
+ * services (shard leases, renewal jobs, Kafka listeners) must not become beans here.
+ */
+class PaymentComponentScanTest {
+
+    @Test
+    void scansPaymentAndSharedBeansOnly() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(true);
+        List<String> components = new ArrayList<>();
+        for (String basePackage : PaymentServiceApplication.class.getAnnotation(SpringBootApplication.class)
+                .scanBasePackages()) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                components.add(candidate.getBeanClassName());
+            }
+        }
+
+        assertThat(components).contains(PaymentService.class.getName(), PaymentController.class.getName(),
+            IdempotencyService.class.getName(), OptimisticRetryExecutor.class.getName());
+        assertThat(components).noneMatch(name -> name.startsWith("com.smartsubscription.subscription."));
+    }
+}
@@ -0,0 +1,82 @@
+package com.smartsubscription.payment.provider;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    // Window of 4, opens at 50% failures, stays open 50 ms, then 2 probes
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 50, 50, 2);
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        breaker.onFailure(breaker.tryAcquirePermission());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onFailure(breaker.tryAcquirePermission());
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    void closesAfterProbesSucceed() throws InterruptedException {
+        trip();
+        Thread.sleep(60);
+
+        long first = breaker.tryAcquirePermission();
+        long second = breaker.tryAcquirePermission();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(first).isNotEqualTo(CircuitBreaker.REJECTED);
+        assertThat(second).isNotEqualTo(CircuitBreaker.REJECTED);
+        assertThat(breaker.tryAcquirePermission()).isEqualTo(CircuitBreaker.REJECTED);
+
+        breaker.onSuccess(first);
+        breaker.onSuccess(second);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getFailureRate()).isZero();
+    }
+
+    @Test
+    void reopensWhenProbeFails() throws InterruptedException {
+        trip();
+        Thread.sleep(60);
+
+        breaker.onFailure(breaker.tryAcquirePermission());
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    void ignoresOutcomesOfCallsStartedBeforeTransition() throws InterruptedException {
+        long slow = breaker.tryAcquirePermission();
+        trip();
+        Thread.sleep(60);
+        long probe = breaker.tryAcquirePermission();
+
+        // A success from before the breaker opened is not a probe succeeding
+        breaker.onSuccess(slow);
+        breaker.onSuccess(slow);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        breaker.onSuccess(probe);
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // Nor does its failure count against the fresh window
+        breaker.onFailure(slow);
+        assertThat(breaker.getFailureRate()).isZero();
+    }
+
+    private void trip() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(breaker.tryAcquirePermission());
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
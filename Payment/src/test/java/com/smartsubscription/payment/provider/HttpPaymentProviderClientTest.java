@@ -0,0 +1,59 @@
+package com.smartsubscription.payment.provider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpPaymentProviderClientTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("9.99");
+
+    private StubPaymentProviderServer stub;
+    private HttpPaymentProviderClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        stub = new StubPaymentProviderServer(0, 4, 300, 300, 0, 0, 0, 0);
+        stub.afterPropertiesSet();
+        client = new HttpPaymentProviderClient(new ObjectMapper(), new SimpleMeterRegistry(),
+            "http://localhost:" + stub.getPort(), "sk_test", "usd", 1000, 5000, 1);
+    }
+
+    @AfterEach
+    void stop() {
+        stub.destroy();
+    }
+
+    @Test
+    void failsAtOnceWithoutBlockingWhenAllSlotsAreTaken() {
+        CompletableFuture<String> first = client.charge("pm_card_visa", AMOUNT, "first");
+
+        CompletableFuture<String> second = client.charge("pm_card_visa", AMOUNT, "second");
+
+        // Already settled on return: the caller was not made to wait for the first call
+        assertThat(second).isCompletedExceptionally();
+        assertThatThrownBy(second::join).hasCauseInstanceOf(PaymentProviderException.class)
+            .hasMessageContaining("Too many payment provider calls in flight");
+        assertThat(first.join()).startsWith("pi_");
+        // The slot came back with the first call's answer
+        assertThat(client.charge("pm_card_visa", AMOUNT, "third").join()).startsWith("pi_");
+    }
+
+    @Test
+    void refusesChargeWithoutPaymentMethod() {
+        CompletableFuture<String> charge = client.charge(null, AMOUNT, "no-method");
+
+        assertThat(charge).isCompletedExceptionally();
+        assertThatThrownBy(charge::join).hasCauseInstanceOf(PaymentProviderException.class)
+            .hasMessageContaining("No payment method to charge");
+    }
+}
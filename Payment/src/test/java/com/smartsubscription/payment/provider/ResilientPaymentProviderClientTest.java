@@ -0,0 +1,120 @@
+package com.smartsubscription.payment.provider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The resilient client against the stub provider over real HTTP.
+ */
+class ResilientPaymentProviderClientTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("9.99");
+    private static final String CARD = "pm_card_visa";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StubPaymentProviderServer stub;
+    private ResilientPaymentProviderClient client;
+
+    @AfterEach
+    void stop() {
+        if (client != null) {
+            client.destroy();
+        }
+        if (stub != null) {
+            stub.destroy();
+        }
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndRecoversWithProvider() throws Exception {
+        startStub(5, 1.0);
+        // No retries; opens at half of 4 calls failing, probes after 200 ms
+        client = client(1, 1000, 4, 200, false, 0);
+
+        for (int i = 0; i < 4; i++) {
+            String key = "fail-" + i;
+            assertThatThrownBy(() -> charge(key)).hasCauseInstanceOf(PaymentProviderException.class);
+        }
+        assertThat(circuitState()).isEqualTo(CircuitBreaker.State.OPEN.ordinal());
+        assertThatThrownBy(() -> charge("rejected")).hasMessageContaining("circuit is open");
+        assertThat(rejected("circuit_open")).isEqualTo(1);
+
+        stub.setErrorRate(0);
+        Thread.sleep(250);
+
+        assertThat(charge("recovered")).startsWith("pi_");
+        assertThat(circuitState()).isEqualTo(CircuitBreaker.State.CLOSED.ordinal());
+    }
+
+    @Test
+    void bulkheadRefusesCallerOnceFull() throws IOException {
+        startStub(300, 0);
+        client = client(1, 1, 20, 30_000, false, 0);
+
+        CompletableFuture<String> first = client.charge(CARD, AMOUNT, "first");
+        assertThatThrownBy(() -> charge("second")).hasMessageContaining("Too many payments waiting");
+        assertThat(rejected("bulkhead_full")).isEqualTo(1);
+
+        assertThat(first.join()).startsWith("pi_");
+    }
+
+    @Test
+    void hedgedRefundSettlesOnOneRefundId() throws IOException {
+        startStub(300, 0);
+        client = client(1, 10, 20, 30_000, true, 50);
+
+        String refundId = client.refund("pi_original", AMOUNT, "refund-1").join();
+
+        // The hedge found the first request in progress; repeating the key replays the one refund
+        assertThat(meterRegistry.counter("payment.provider.hedges").count()).isEqualTo(1);
+        assertThat(refundId).startsWith("re_");
+        assertThat(client.refund("pi_original", AMOUNT, "refund-1").join()).isEqualTo(refundId);
+    }
+
+    @Test
+    void stubReplaysResponseForRepeatedIdempotencyKey() throws IOException {
+        startStub(5, 0);
+        client = client(1, 10, 20, 30_000, false, 0);
+
+        String id = charge("charge-1");
+
+        assertThat(charge("charge-1")).isEqualTo(id);
+        assertThat(charge("charge-2")).isNotEqualTo(id);
+    }
+
+    private String charge(String idempotencyKey) {
+        return client.charge(CARD, AMOUNT, idempotencyKey).join();
+    }
+
+    // Constant latency: median and p99 equal
+    private void startStub(long latencyMillis, double errorRate) throws IOException {
+        stub = new StubPaymentProviderServer(0, 20, latencyMillis, latencyMillis, errorRate, 0, 0, 0);
+        stub.afterPropertiesSet();
+    }
+
+    private ResilientPaymentProviderClient client(int maxConcurrent, long maxWaitMillis, int windowSize,
+                                                  long openMillis, boolean hedgeRefunds, long hedgeDelayMillis) {
+        HttpPaymentProviderClient http = new HttpPaymentProviderClient(new ObjectMapper(), meterRegistry,
+            "http://localhost:" + stub.getPort(), "sk_test", "usd", 1000, 5000, 20);
+        return new ResilientPaymentProviderClient(http, meterRegistry, 5000, maxConcurrent, maxWaitMillis,
+            1, 10, 100, windowSize, windowSize, 50, openMillis, 1, hedgeRefunds, hedgeDelayMillis);
+    }
+
+    private double circuitState() {
+        return meterRegistry.get("payment.provider.circuit.state").gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("payment.provider.rejected").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,53 @@
+package com.smartsubscription.payment.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A database created by ddl-auto before Flyway is baselined at V1, which is skipped.
+ * Everything added since must therefore come from later versions.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class BaselinedDatabaseMigrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Test
+    void baselinedDatabaseGetsRenewalChargeColumn() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        // The schema ddl-auto left behind, without Flyway's history table
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/payment/V1__baseline.sql"))
+            .execute(dataSource);
+
+        // Configured as the service configures it through spring.flyway
+        Flyway.configure()
+            .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+            .baselineOnMigrate(true)
+            .baselineVersion("1")
+            .dataSource(dataSource)
+            .locations("classpath:db/migration/payment")
+            .load()
+            .migrate();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<String> columns = jdbcTemplate.queryForList("SELECT column_name FROM information_schema.columns " +
+            "WHERE table_name = 'payments'", String.class);
+        assertThat(columns).contains("renewal_charge_id", "payment_method_token");
+        assertThat(jdbcTemplate.queryForObject("SELECT indisunique AND indisvalid FROM pg_index " +
+            "WHERE indexrelid = 'uk_payments_renewal_charge'::regclass", Boolean.class)).isTrue();
+    }
+}
@@ -0,0 +1,168 @@
+package com.smartsubscription.payment.repository;
+
+import com.smartsubscription.payment.entity.Payment;
+import com.smartsubscription.payment.entity.PaymentResponse;
+import com.smartsubscription.payment.entity.PaymentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The payment read paths against what they replaced, in time and bytes allocated per
+ * call. A user's payment list was managed entities loaded in a read-write transaction
+ * and copied into PaymentResponse; the constructor-expression projection in a
+ * read-only transaction is markedly faster. One payment by id is the other way round:
+ * findById is em.find, a primary-key load, while a @Query method goes through Spring
+ * Data's query and result processing, which allocates several times as much per call
+ * as the row itself; so getPayment loads the entity read-only.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentReadProjectionBenchmarkTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final String USER_ID = "user-1";
+    private static final int PAYMENTS_PER_USER = 20;
+    private static final int WARMUP = 2000;
+    private static final int CALLS = 5000;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PaymentResponseLookup paymentResponseLookup;
+
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+    private UUID paymentId;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @BeforeEach
+    void insertPayments() {
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        paymentRepository.deleteAll();
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < PAYMENTS_PER_USER; i++) {
+            payments.add(Payment.builder()
+                .userId(USER_ID)
+                .subscriptionId("sub-" + i)
+                .amount(new BigDecimal("9.99"))
+                .status(PaymentStatus.SUCCEEDED)
+                .transactionId("pi_" + i)
+                .paymentMethodToken("pm_card_visa")
+                .build());
+        }
+        paymentId = paymentRepository.saveAll(payments).get(0).getId();
+    }
+
+    @Test
+    void projectionServesListsAndEntityServesOnePayment() {
+        Run entityList = measure(() -> readWrite.execute(status ->
+            paymentRepository.findByUserId(USER_ID).stream().map(PaymentReadProjectionBenchmarkTest::toResponse)
+                .toArray(PaymentResponse[]::new)));
+        Run projectionList = measure(() -> readOnly.execute(status ->
+            paymentRepository.findResponsesByUserId(USER_ID).toArray(PaymentResponse[]::new)));
+        Run entityOne = measure(() -> readOnly.execute(status ->
+            paymentRepository.findById(paymentId).map(PaymentReadProjectionBenchmarkTest::toResponse).orElseThrow()));
+        Run projectionOne = measure(() -> readOnly.execute(status ->
+            paymentResponseLookup.findResponseById(paymentId).orElseThrow()));
+
+        String report = String.format("%d payments per user, %d calls each. List: entities %s, projection %s. "
+                + "One payment: entity %s, projection %s",
+            PAYMENTS_PER_USER, CALLS, entityList, projectionList, entityOne, projectionOne);
+        assertThat(projectionList.microsPerCall).as(report).isLessThan(entityList.microsPerCall);
+        assertThat(entityOne.bytesPerCall).as(report).isLessThan(projectionOne.bytesPerCall);
+    }
+
+    private static Run measure(Supplier<Object> call) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            assertThat(call.get()).isNotNull();
+        }
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            call.get();
+        }
+        long nanos = System.nanoTime() - start;
+        return new Run(nanos / CALLS / 1000, (threads.getCurrentThreadAllocatedBytes() - bytes) / CALLS);
+    }
+
+    // As PaymentService's buildPaymentResponse
+    private static PaymentResponse toResponse(Payment payment) {
+        return PaymentResponse.builder()
+            .paymentId(payment.getId())
+            .userId(payment.getUserId())
+            .subscriptionId(payment.getSubscriptionId())
+            .amount(payment.getAmount())
+            .status(payment.getStatus())
+            .transactionId(payment.getTransactionId())
+            .createdAt(payment.getCreatedAt())
+            .build();
+    }
+
+    private record Run(long microsPerCall, long bytesPerCall) {
+
+        @Override
+        public String toString() {
+            return microsPerCall + " us and " + bytesPerCall + " B per call";
+        }
+    }
+
+    // The projection getPayment used to read one payment with
+    interface PaymentResponseLookup extends Repository<Payment, UUID> {
+
+        @Query(PaymentRepository.RESPONSE_SELECT + "WHERE p.id = :id")
+        Optional<PaymentResponse> findResponseById(@Param("id") UUID id);
+    }
+
+    // Payment's own entities and repositories only, migrated by Flyway as the service does
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Payment.class)
+    @EnableJpaRepositories(basePackageClasses = PaymentRepository.class, considerNestedRepositories = true)
+    static class PaymentJpa {
+    }
+}
@@ -0,0 +1,209 @@
+package com.smartsubscription.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.data.retry.OptimisticRetryExecutor;
+import com.smartsubscription.payment.entity.Payment;
+import com.smartsubscription.payment.entity.PaymentRequest;
+import com.smartsubscription.payment.entity.PaymentResponse;
+import com.smartsubscription.payment.entity.PaymentStatus;
+import com.smartsubscription.payment.provider.HttpPaymentProviderClient;
+import com.smartsubscription.payment.provider.ResilientPaymentProviderClient;
+import com.smartsubscription.payment.provider.StubPaymentProviderServer;
+import com.smartsubscription.payment.repository.PaymentRepository;
+import com.smartsubscription.subscription.entity.Subscription;
+import com.smartsubscription.subscription.repository.SubscriptionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives doPayment from many callers at once against the stub provider over HTTP,
+ * with a slow constant latency, while every transaction has to take one of a fixed
+ * number of pooled connections, as Hikari's would, or give up after the pool's
+ * connection timeout. Holding a connection across the provider call would cap the
+ * rate at pool size / latency and time callers out; with the short transactions the
+ * rate follows the number of callers and each connection is held for far less than
+ * one provider call.
+ * <p>
+ * The same run against the whole service: start it with payment.provider.stub.enabled,
+ * latency-median-ms and latency-p99-ms both 500 and a small
+ * spring.datasource.hikari.maximum-pool-size, put POST /api/payments/process under load,
+ * and watch hikaricp.connections.active and hikaricp.connections.pending.
+ */
+class PaymentServiceLoadTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final long CONNECTION_TIMEOUT_MS = 5000;
+    private static final long PROVIDER_LATENCY_MS = 200;
+    private static final int CALLERS = 40;
+    private static final int PAYMENTS = 200;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PooledTransactionManager transactionManager =
+        new PooledTransactionManager(POOL_SIZE, CONNECTION_TIMEOUT_MS);
+    private StubPaymentProviderServer stub;
+    private ResilientPaymentProviderClient providerClient;
+    private PaymentService paymentService;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new StubPaymentProviderServer(0, CALLERS, PROVIDER_LATENCY_MS, PROVIDER_LATENCY_MS, 0, 0, 0, 0);
+        stub.afterPropertiesSet();
+        HttpPaymentProviderClient http = new HttpPaymentProviderClient(new ObjectMapper(), meterRegistry,
+            "http://localhost:" + stub.getPort(), "sk_test", "usd", 1000, 5000, CALLERS);
+        providerClient = new ResilientPaymentProviderClient(http, meterRegistry, 10_000, CALLERS, 100,
+            3, 100, 1000, 50, 20, 50, 30_000, 3, false, 1000);
+
+        PaymentRepository paymentRepository = mock(PaymentRepository.class);
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment payment = invocation.getArgument(0);
+            if (payment.getId() == null) {
+                payment.setId(UUID.randomUUID());
+            }
+            return payment;
+        });
+        when(paymentRepository.findFirstByUserIdAndSubscriptionIdAndStatusOrderByCreatedAtDesc(
+            anyString(), anyString(), any(PaymentStatus.class))).thenReturn(Optional.empty());
+
+        SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+        when(subscriptionRepository.findById(anyString())).thenAnswer(invocation -> {
+            Subscription subscription = new Subscription();
+            subscription.setId(invocation.getArgument(0));
+            subscription.setUserId("user-" + invocation.getArgument(0));
+            subscription.setPlanName("Plan");
+            return Optional.of(subscription);
+        });
+
+        @SuppressWarnings("unchecked")
+        KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+        paymentService = new PaymentService(paymentRepository, subscriptionRepository, kafkaTemplate,
+            mock(NotificationService.class), mock(PaymentOutbox.class),
+            new OptimisticRetryExecutor(transactionManager, meterRegistry, 4, 10, 200),
+            new TransactionTemplate(transactionManager), providerClient);
+    }
+
+    @AfterEach
+    void stop() {
+        providerClient.destroy();
+        stub.destroy();
+    }
+
+    @Test
+    void poolUsageStaysFlatWhileProviderIsSlow() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        List<Future<PaymentResponse>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < PAYMENTS; i++) {
+                String subscriptionId = "sub-" + i;
+                PaymentRequest request = new PaymentRequest(subscriptionId, new BigDecimal("9.99"), "pm_card_visa");
+                results.add(callers.submit(() -> paymentService.doPayment("user-" + subscriptionId, request)));
+            }
+            for (Future<PaymentResponse> result : results) {
+                assertThat(result.get(30, TimeUnit.SECONDS).getStatus()).isEqualTo(PaymentStatus.SUCCEEDED);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double perSecond = PAYMENTS / seconds;
+        double poolBound = POOL_SIZE * 1000.0 / PROVIDER_LATENCY_MS;
+
+        String run = String.format("%d payments in %.2f s: %.0f/s with a pool of %d (%.0f/s if held across "
+                + "the call); connections busy at most %d, longest hold %d ms, %d waits for a connection",
+            PAYMENTS, seconds, perSecond, POOL_SIZE, poolBound, transactionManager.peakInUse.get(),
+            TimeUnit.NANOSECONDS.toMillis(transactionManager.longestHoldNanos.get()),
+            transactionManager.waits.get());
+
+        // Every payment takes three connections in turn; one held across the call would be held its whole latency
+        assertThat(transactionManager.acquired.get()).as(run).isEqualTo(3L * PAYMENTS);
+        assertThat(transactionManager.longestHoldNanos.get()).as(run)
+            .isLessThan(TimeUnit.MILLISECONDS.toNanos(PROVIDER_LATENCY_MS));
+        assertThat(perSecond).as(run).isGreaterThan(3 * poolBound);
+    }
+
+    // A fixed pool of connections, one taken per transaction for as long as it is open
+    private static final class PooledTransactionManager implements PlatformTransactionManager {
+
+        private final Semaphore connections;
+        private final long connectionTimeoutMillis;
+        private final Map<TransactionStatus, Long> openedAt = new ConcurrentHashMap<>();
+        private final AtomicInteger inUse = new AtomicInteger();
+        private final AtomicInteger peakInUse = new AtomicInteger();
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong longestHoldNanos = new AtomicLong();
+
+        private PooledTransactionManager(int poolSize, long connectionTimeoutMillis) {
+            this.connections = new Semaphore(poolSize);
+            this.connectionTimeoutMillis = connectionTimeoutMillis;
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            try {
+                if (!connections.tryAcquire()) {
+                    waits.incrementAndGet();
+                    if (!connections.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        throw new CannotCreateTransactionException("Connection is not available, request timed out");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotCreateTransactionException("Interrupted while waiting for a connection", e);
+            }
+            acquired.incrementAndGet();
+            peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+            TransactionStatus status = new SimpleTransactionStatus(true);
+            openedAt.put(status, System.nanoTime());
+            return status;
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            release(status);
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            release(status);
+        }
+
+        private void release(TransactionStatus status) {
+            long held = System.nanoTime() - openedAt.remove(status);
+            longestHoldNanos.accumulateAndGet(held, Math::max);
+            inUse.decrementAndGet();
+            connections.release();
+        }
+    }
+}
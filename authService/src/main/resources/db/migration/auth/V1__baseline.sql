@@ -0,0 +1,9 @@
+-- Schema as previously created by ddl-auto; existing databases are baselined at this version
+
+CREATE TABLE users (
+    id       varchar(255) NOT NULL PRIMARY KEY,
+    username varchar(255) NOT NULL,
+    password varchar(255) NOT NULL,
+    role     varchar(255) NOT NULL,
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
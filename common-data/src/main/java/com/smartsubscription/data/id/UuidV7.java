@@ -0,0 +1,48 @@
+package com.smartsubscription.data.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered UUIDs (version 7, RFC 9562). The first 48 bits are the Unix time in
+ * milliseconds, so keys generated close together land next to each other in a B-tree
+ * index instead of on random pages. The following 12 bits are a counter that keeps ids
+ * from this JVM strictly increasing within a millisecond, and the remaining 62 bits are
+ * random.
+ */
+public final class UuidV7 {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // Last issued (millis << 12 | sequence)
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    public static UUID generate() {
+        long next = LAST.updateAndGet(last -> next(last, System.currentTimeMillis()));
+        return of(next, ThreadLocalRandom.current().nextLong());
+    }
+
+    public static String generateString() {
+        return generate().toString();
+    }
+
+    // Same millisecond, clock stepped back or sequence exhausted: carry on from the last value
+    static long next(long last, long nowMillis) {
+        long now = nowMillis << SEQUENCE_BITS;
+        return now > last ? now : last + 1;
+    }
+
+    static UUID of(long next, long random) {
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+
+        long mostSigBits = (millis << 16) | 0x7000L | sequence;
+        long leastSigBits = (random & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
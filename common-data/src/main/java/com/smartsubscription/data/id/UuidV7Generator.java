@@ -0,0 +1,39 @@
+package com.smartsubscription.data.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.EnumSet;
+import java.util.UUID;
+
+// Hibernate side of @UuidV7Id
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    private final boolean asString;
+
+    public UuidV7Generator(UuidV7Id config, Member member, CustomIdGeneratorCreationContext context) {
+        Class<?> type = member instanceof Field field ? field.getType() : ((Method) member).getReturnType();
+        if (type != String.class && type != UUID.class) {
+            throw new IllegalArgumentException("@UuidV7Id requires a UUID or String id, found " + type.getName()
+                + " on " + member.getDeclaringClass().getName() + "." + member.getName());
+        }
+        this.asString = type == String.class;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return asString ? UuidV7.generateString() : UuidV7.generate();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
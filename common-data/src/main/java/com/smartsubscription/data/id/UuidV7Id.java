@@ -0,0 +1,19 @@
+package com.smartsubscription.data.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates the annotated id with {@link UuidV7} when the entity is first persisted.
+ * Works on {@code UUID} and {@code String} ids; used in place of
+ * {@code @GeneratedValue(strategy = GenerationType.UUID)}, which produces random v4 keys.
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface UuidV7Id {
+}
@@ -0,0 +1,23 @@
+package com.smartsubscription.data.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// What a store holds per key: the request fingerprint and, once finished, the response
+@Getter
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    private final String fingerprint;
+    private final Integer status;
+    private final String contentType;
+    private final byte[] body;
+
+    public static IdempotencyRecord inProgress(String fingerprint) {
+        return new IdempotencyRecord(fingerprint, null, null, null);
+    }
+
+    public boolean isCompleted() {
+        return status != null;
+    }
+}
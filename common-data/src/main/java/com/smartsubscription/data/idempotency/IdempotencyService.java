@@ -0,0 +1,195 @@
+package com.smartsubscription.data.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Makes a POST endpoint safe to retry with an Idempotency-Key header. The first
+ * request under a key runs and its response is stored with a fingerprint of the
+ * request; a retry with the same key and body gets the stored response replayed
+ * without running anything. A duplicate arriving while the first is still running on
+ * this instance waits for it; one running on another instance (jdbc store) is answered
+ * 409. Reusing a key for a different request is answered 422. Failed executions are
+ * not stored, so the client can retry them. Without the header the action just runs.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter fingerprintWriter;
+    private final long waitTimeoutMillis;
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyStore store,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.wait-timeout-ms:30000}") long waitTimeoutMillis) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        // Same body, same fingerprint, whatever order the client sent the fields in
+        this.fingerprintWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    /**
+     * Runs the action at most once per (scope, principal, key). The scope names the
+     * endpoint; the request is whatever identifies the call beyond the principal,
+     * usually the body.
+     */
+    public ResponseEntity<?> execute(String scope, String principal, String key, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String storeKey = scope + ':' + principal + ':' + key;
+        String fingerprint = fingerprint(scope, principal, request);
+
+        InFlight mine = new InFlight(fingerprint);
+        InFlight running = inFlight.putIfAbsent(storeKey, mine);
+        if (running != null) {
+            return awaitDuplicate(running, fingerprint);
+        }
+
+        try {
+            Optional<IdempotencyRecord> existing = store.claim(storeKey, fingerprint);
+            if (existing.isPresent()) {
+                IdempotencyRecord record = existing.get();
+                checkFingerprint(record.getFingerprint(), fingerprint);
+                if (!record.isCompleted()) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "A request with this " + HEADER + " is still being processed");
+                }
+                mine.result.complete(record);
+                return replay(record);
+            }
+
+            ResponseEntity<?> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                store.release(storeKey);
+                throw e;
+            }
+
+            IdempotencyRecord record = toRecord(fingerprint, response);
+            try {
+                store.complete(storeKey, record);
+            } catch (RuntimeException e) {
+                // The action has run; still answer it, a later retry just runs again
+                log.error("Could not store idempotent response for {} key {}: {}", scope, key, e.getMessage());
+            }
+            mine.result.complete(record);
+            return response;
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(storeKey, mine);
+        }
+    }
+
+    private ResponseEntity<?> awaitDuplicate(InFlight running, String fingerprint) {
+        checkFingerprint(running.fingerprint, fingerprint);
+        try {
+            return replay(running.result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                "A request with this " + HEADER + " is still being processed");
+        } catch (ExecutionException e) {
+            // The duplicate fails the way the original did
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting");
+        }
+    }
+
+    private static void checkFingerprint(String stored, String fingerprint) {
+        if (!stored.equals(fingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                HEADER + " was already used for a different request");
+        }
+    }
+
+    private static ResponseEntity<byte[]> replay(IdempotencyRecord record) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatusCode.valueOf(record.getStatus()))
+            .header(REPLAYED_HEADER, "true");
+        if (record.getContentType() != null) {
+            builder.header(HttpHeaders.CONTENT_TYPE, record.getContentType());
+        }
+        return builder.body(record.getBody());
+    }
+
+    private IdempotencyRecord toRecord(String fingerprint, ResponseEntity<?> response) {
+        try {
+            byte[] body = response.getBody() == null ? new byte[0] : objectMapper.writeValueAsBytes(response.getBody());
+            MediaType contentType = response.getHeaders().getContentType();
+            return new IdempotencyRecord(fingerprint, response.getStatusCode().value(),
+                contentType != null ? contentType.toString() : MediaType.APPLICATION_JSON_VALUE, body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store response for replay", e);
+        }
+    }
+
+    private String fingerprint(String scope, String principal, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(scope.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(principal.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fingerprintWriter.writeValueAsBytes(request));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private static final class InFlight {
+
+        private final String fingerprint;
+        private final CompletableFuture<IdempotencyRecord> result = new CompletableFuture<>();
+
+        private InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
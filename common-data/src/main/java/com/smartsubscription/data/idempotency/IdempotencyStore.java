@@ -0,0 +1,22 @@
+package com.smartsubscription.data.idempotency;
+
+import java.util.Optional;
+
+/**
+ * Backing store for idempotency keys. Selected with idempotency.store: memory (the
+ * default, per instance) or jdbc (shared by every instance of the service).
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Claims the key for a new execution. Returns empty when the caller now owns it,
+     * otherwise the record already held under the key, in progress or completed.
+     */
+    Optional<IdempotencyRecord> claim(String key, String fingerprint);
+
+    // Stores the response of the execution that claimed the key
+    void complete(String key, IdempotencyRecord record);
+
+    // Drops a claim whose execution failed, so a retry runs again
+    void release(String key);
+}
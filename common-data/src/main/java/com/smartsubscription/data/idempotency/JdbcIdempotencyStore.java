@@ -0,0 +1,95 @@
+package com.smartsubscription.data.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Idempotency keys in the idempotency_keys table, shared by every instance. A claim
+ * left unfinished for longer than idempotency.lease-seconds (its instance died) and
+ * a response older than the TTL can both be claimed again.
+ */
+@Repository
+@ConditionalOnProperty(name = "idempotency.store", havingValue = "jdbc")
+@Slf4j
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String CLAIM =
+        "INSERT INTO idempotency_keys (idem_key, fingerprint, created_at) VALUES (?, ?, now()) " +
+        "ON CONFLICT (idem_key) DO UPDATE SET fingerprint = EXCLUDED.fingerprint, created_at = EXCLUDED.created_at, " +
+        "status = NULL, content_type = NULL, body = NULL, completed_at = NULL " +
+        "WHERE (idempotency_keys.completed_at IS NULL " +
+        "AND idempotency_keys.created_at < now() - ? * interval '1 second') " +
+        "OR idempotency_keys.completed_at < now() - ? * interval '1 second' " +
+        "RETURNING idem_key";
+
+    private static final String SELECT =
+        "SELECT fingerprint, status, content_type, body FROM idempotency_keys WHERE idem_key = ?";
+
+    private static final String COMPLETE =
+        "UPDATE idempotency_keys SET status = ?, content_type = ?, body = ?, completed_at = now() WHERE idem_key = ?";
+
+    private static final String RELEASE =
+        "DELETE FROM idempotency_keys WHERE idem_key = ? AND completed_at IS NULL";
+
+    private static final String PURGE =
+        "DELETE FROM idempotency_keys WHERE created_at < now() - ? * interval '1 second'";
+
+    private static final RowMapper<IdempotencyRecord> RECORD_ROW_MAPPER = (rs, rowNum) -> new IdempotencyRecord(
+        rs.getString("fingerprint"),
+        (Integer) rs.getObject("status"),
+        rs.getString("content_type"),
+        rs.getBytes("body"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlSeconds;
+    private final long leaseSeconds;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate,
+                                @Value("${idempotency.ttl-seconds:86400}") long ttlSeconds,
+                                @Value("${idempotency.lease-seconds:60}") long leaseSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlSeconds = ttlSeconds;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> claim(String key, String fingerprint) {
+        // A key released between the two statements is simply claimed on the next round
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (!jdbcTemplate.queryForList(CLAIM, String.class, key, fingerprint, leaseSeconds, ttlSeconds).isEmpty()) {
+                return Optional.empty();
+            }
+            Optional<IdempotencyRecord> existing = jdbcTemplate.query(SELECT, RECORD_ROW_MAPPER, key).stream().findFirst();
+            if (existing.isPresent()) {
+                return existing;
+            }
+        }
+        throw new IllegalStateException("Could not claim idempotency key " + key);
+    }
+
+    @Override
+    public void complete(String key, IdempotencyRecord record) {
+        jdbcTemplate.update(COMPLETE, record.getStatus(), record.getContentType(), record.getBody(), key);
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update(RELEASE, key);
+    }
+
+    // Keeps the table bounded to roughly one TTL of keys
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        int purged = jdbcTemplate.update(PURGE, ttlSeconds);
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+}
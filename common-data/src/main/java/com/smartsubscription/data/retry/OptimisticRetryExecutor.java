@@ -0,0 +1,112 @@
+package com.smartsubscription.data.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read-modify-write of versioned entities in its own transaction and, when the
+ * commit loses an optimistic-lock race, runs the whole thing again from a fresh read.
+ * Attempts are bounded and spaced with jittered exponential backoff, so writers that
+ * collide do not collide again in lockstep. Meters, tagged by operation:
+ * subscription.optimistic.conflicts, subscription.optimistic.exhausted and the
+ * subscription.optimistic.attempts distribution.
+ */
+@Component
+@Slf4j
+public class OptimisticRetryExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${subscription.concurrency.max-attempts:4}") int maxAttempts,
+                                   @Value("${subscription.concurrency.backoff-ms:10}") long backoffMillis,
+                                   @Value("${subscription.concurrency.max-backoff-ms:200}") long maxBackoffMillis) {
+        // Every attempt needs its own persistence context, or the retry would re-read stale entities
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public <T> T execute(String operation, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = transactionTemplate.execute(status -> action.get());
+                attempts(operation).record(attempt);
+                return result;
+            } catch (OptimisticLockingFailureException e) {
+                conflicts(operation).increment();
+                if (attempt >= maxAttempts) {
+                    exhausted(operation).increment();
+                    log.warn("Giving up on {} after {} conflicting attempts: {}", operation, attempt, e.getMessage());
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "The subscription was changed concurrently, please retry");
+                }
+                log.debug("Optimistic lock conflict on {} (attempt {}), retrying", operation, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    public void run(String operation, Runnable action) {
+        execute(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Full jitter: a random wait up to the exponential bound
+    private void backoff(int attempt) {
+        long bound = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off a retry", e);
+        }
+    }
+
+    private Counter conflicts(String operation) {
+        return Counter.builder("subscription.optimistic.conflicts")
+            .description("Commits rejected because the row changed since it was read")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    private Counter exhausted(String operation) {
+        return Counter.builder("subscription.optimistic.exhausted")
+            .description("Operations that still conflicted after the last attempt")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    private DistributionSummary attempts(String operation) {
+        return DistributionSummary.builder("subscription.optimistic.attempts")
+            .description("Attempts needed per successful operation")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+}
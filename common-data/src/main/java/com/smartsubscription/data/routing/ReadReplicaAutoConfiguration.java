@@ -0,0 +1,89 @@
+package com.smartsubscription.data.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Replaces the service's single pool with a primary pool, a replica pool and a
+ * routing DataSource in front of them, once datasource.replica.url is set. The
+ * primary is configured exactly as before from spring.datasource.*; the replica takes
+ * its url from datasource.replica.*, the credentials and driver of the primary unless
+ * overridden, and pool settings from datasource.replica.hikari.*. Without the url
+ * nothing here applies and Boot's own DataSource is used.
+ * <p>
+ * The two pools are beans of their own, named primaryDataSource and replicaDataSource,
+ * so they are started, monitored and closed once each; anything that injects a plain
+ * DataSource gets the routing one, which is the primary bean.
+ */
+@AutoConfiguration(before = DataSourceAutoConfiguration.class)
+@ConditionalOnClass(HikariDataSource.class)
+@ConditionalOnProperty(prefix = "datasource.replica", name = "url")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReadReplicaAutoConfiguration {
+
+    private final DataSourceProperties properties;
+    private final Environment environment;
+
+    public ReadReplicaAutoConfiguration(DataSourceProperties properties, Environment environment) {
+        this.properties = properties;
+        this.environment = environment;
+    }
+
+    @Bean
+    public HikariDataSource primaryDataSource() {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        if (dataSource.getPoolName() == null) {
+            dataSource.setPoolName("primary");
+        }
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(environment.getRequiredProperty("datasource.replica.url"));
+        dataSource.setUsername(environment.getProperty("datasource.replica.username", properties.determineUsername()));
+        dataSource.setPassword(environment.getProperty("datasource.replica.password", properties.determinePassword()));
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        // Nothing written through this pool; the driver can skip work it would do for writes
+        dataSource.setReadOnly(true);
+        dataSource.setPoolName("replica");
+        Binder.get(environment).bind("datasource.replica.hikari", Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new ReplicaLagMonitor(replicaDataSource,
+            environment.getProperty("datasource.replica.max-lag-ms", Long.class, 1000L),
+            environment.getProperty("datasource.replica.lag-check-interval-ms", Long.class, 1000L));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        // The same pool instances the lag monitor watches; bean methods are not proxied here
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+            primaryDataSource, replicaDataSource, replicaLagMonitor);
+        routing.afterPropertiesSet();
+        // Defers taking a connection until the first statement, after the read-only flag is known
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,100 @@
+package com.smartsubscription.data.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the replica for how far its replay is behind the primary. The replica is
+ * usable while that stays within the configured bound; an unreachable replica, or one
+ * behind by more, takes it out of rotation until a later check says otherwise. Until
+ * the first check has run the replica is not used. A database that is not in recovery
+ * counts as caught up, so a plain second Postgres can stand in for a replica locally.
+ */
+public class ReplicaLagMonitor implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Caught up when everything received has been replayed; an idle primary is not lag
+    private static final String LAG_MILLIS =
+        "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+        "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+        "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private final DataSource replica;
+    private final long maxLagMillis;
+    private final long checkIntervalMillis;
+
+    private volatile boolean usable;
+    private volatile long lastLagMillis = -1;
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaLagMonitor(DataSource replica, long maxLagMillis, long checkIntervalMillis) {
+        this.replica = replica;
+        this.maxLagMillis = maxLagMillis;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    public boolean isReplicaUsable() {
+        return usable;
+    }
+
+    // Replay lag seen by the last check, or -1 when the replica could not be reached
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    void check() {
+        long lag;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG_MILLIS)) {
+            rs.next();
+            lag = rs.getLong(1);
+        } catch (SQLException | RuntimeException e) {
+            lastLagMillis = -1;
+            setUsable(false, "unreachable: " + e.getMessage());
+            return;
+        }
+        lastLagMillis = lag;
+        setUsable(lag <= maxLagMillis, "replay lag " + lag + " ms, limit " + maxLagMillis + " ms");
+    }
+
+    private void setUsable(boolean now, String reason) {
+        if (now != usable) {
+            if (now) {
+                log.info("Read replica back in rotation ({})", reason);
+            } else {
+                log.warn("Read replica taken out of rotation, reads go to the primary ({})", reason);
+            }
+        }
+        usable = now;
+    }
+}
@@ -0,0 +1,70 @@
+package com.smartsubscription.data.id;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Inserts the same number of rows keyed by v4 and by v7 ids into a table shaped like
+ * the services' (a varchar primary key) once the index no longer fits in
+ * shared_buffers. Random v4 keys split leaf pages all over the index and leave them
+ * half full, and each insert dirties a different page; v7 keys append to the rightmost
+ * leaf. The comparison is on the index's size, which does not depend on the machine;
+ * the timings are reported alongside.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class UuidV7InsertBenchmarkTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine")
+        .withCommand("postgres", "-c", "shared_buffers=16MB");
+
+    private static final int ROWS = 500_000;
+    private static final int BATCH = 1000;
+
+    @Test
+    void v7KeysInsertIntoSmallerIndexThanV4() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+
+        Run v4 = insert(jdbcTemplate, "ids_v4", () -> UUID.randomUUID().toString());
+        Run v7 = insert(jdbcTemplate, "ids_v7", UuidV7::generateString);
+
+        String report = String.format("%d rows: v4 %d ms, index %d kB; v7 %d ms, index %d kB",
+            ROWS, v4.millis, v4.indexBytes / 1024, v7.millis, v7.indexBytes / 1024);
+        // Appending fills leaves to the fillfactor (90%); random splits leave them about 70% full
+        assertThat(v7.indexBytes).as(report).isLessThan(v4.indexBytes * 85 / 100);
+    }
+
+    private static Run insert(JdbcTemplate jdbcTemplate, String table, Supplier<String> ids) {
+        jdbcTemplate.execute("CREATE TABLE " + table + " (id varchar(255) PRIMARY KEY, payload varchar(255))");
+        String sql = "INSERT INTO " + table + " (id, payload) VALUES (?, ?)";
+
+        long start = System.nanoTime();
+        for (int done = 0; done < ROWS; done += BATCH) {
+            List<Object[]> rows = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                rows.add(new Object[]{ids.get(), "row " + (done + i)});
+            }
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        Long indexBytes = jdbcTemplate.queryForObject(
+            "SELECT pg_relation_size('" + table + "_pkey')", Long.class);
+        return new Run(millis, indexBytes);
+    }
+
+    private record Run(long millis, long indexBytes) {
+    }
+}
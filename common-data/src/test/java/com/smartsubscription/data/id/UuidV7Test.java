@@ -0,0 +1,72 @@
+package com.smartsubscription.data.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7Test {
+
+    private static final long MILLIS = 1_700_000_000_000L;
+
+    @Test
+    void setsVersionAndVariantBits() {
+        UUID id = UuidV7.generate();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        // Whatever the random bits are
+        assertThat(UuidV7.of(0, -1L).variant()).isEqualTo(2);
+        assertThat(UuidV7.of(0, 0L).variant()).isEqualTo(2);
+    }
+
+    @Test
+    void startsWithUnixMillis() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.generate();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after);
+    }
+
+    @Test
+    void idsFromThisJvmSortInGenerationOrder() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(UuidV7.generate());
+        }
+
+        // As strings too, which is how String ids are compared by the database
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(ids.get(i).getMostSignificantBits()).isGreaterThan(ids.get(i - 1).getMostSignificantBits());
+            assertThat(ids.get(i).toString()).isGreaterThan(ids.get(i - 1).toString());
+        }
+    }
+
+    @Test
+    void countsWithinMillisecondAndCarriesIntoTimestampWhenSequenceRunsOut() {
+        long first = UuidV7.next(0, MILLIS);
+        assertThat(UuidV7.of(first, 0).getMostSignificantBits() & 0xFFF).isZero();
+
+        long second = UuidV7.next(first, MILLIS);
+        assertThat(UuidV7.of(second, 0).getMostSignificantBits() & 0xFFF).isEqualTo(1);
+
+        long exhausted = (MILLIS << 12) | 0xFFF;
+        UUID carried = UuidV7.of(UuidV7.next(exhausted, MILLIS), 0);
+        assertThat(carried.getMostSignificantBits() >>> 16).isEqualTo(MILLIS + 1);
+        assertThat(carried.getMostSignificantBits() & 0xFFF).isZero();
+        assertThat(carried.version()).isEqualTo(7);
+    }
+
+    @Test
+    void keepsIncreasingWhenClockStepsBack() {
+        long last = UuidV7.next(0, MILLIS);
+
+        long next = UuidV7.next(last, MILLIS - 5_000);
+
+        assertThat(next).isEqualTo(last + 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.smartsubscription.data.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadReplicaAutoConfigurationTest {
+
+    // Nothing listens on port 1, so the lag monitor's checks fail fast and the replica stays out of rotation
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(ReadReplicaAutoConfiguration.class, DataSourceAutoConfiguration.class))
+        .withPropertyValues(
+            "spring.datasource.url=jdbc:postgresql://localhost:1/primary",
+            "spring.datasource.username=app",
+            "datasource.replica.lag-check-interval-ms=60000");
+
+    @Test
+    void routerAndLagMonitorShareOnePoolPerDatabase() {
+        runner.withPropertyValues("datasource.replica.url=jdbc:postgresql://localhost:1/replica")
+            .run(context -> {
+                assertThat(context).hasNotFailed();
+                assertThat(context.getBeansOfType(HikariDataSource.class)).hasSize(2);
+
+                HikariDataSource primary = context.getBean("primaryDataSource", HikariDataSource.class);
+                HikariDataSource replica = context.getBean("replicaDataSource", HikariDataSource.class);
+                assertThat(primary.getJdbcUrl()).endsWith("/primary");
+                assertThat(replica.getJdbcUrl()).endsWith("/replica");
+                assertThat(replica.isReadOnly()).isTrue();
+
+                DataSource dataSource = context.getBean(DataSource.class);
+                assertThat(dataSource).isInstanceOf(LazyConnectionDataSourceProxy.class);
+                ReplicaRoutingDataSource routing = (ReplicaRoutingDataSource)
+                    ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+                Map<Object, DataSource> targets = routing.getResolvedDataSources();
+                assertThat(targets.get(ReplicaRoutingDataSource.Role.PRIMARY)).isSameAs(primary);
+                assertThat(targets.get(ReplicaRoutingDataSource.Role.REPLICA)).isSameAs(replica);
+
+                ReplicaLagMonitor monitor = context.getBean(ReplicaLagMonitor.class);
+                assertThat(ReflectionTestUtils.getField(monitor, "replica")).isSameAs(replica);
+            });
+    }
+
+    @Test
+    void backsOffWithoutReplicaUrl() {
+        runner.run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context).doesNotHaveBean(ReplicaLagMonitor.class);
+            assertThat(context).doesNotHaveBean(ReplicaRoutingDataSource.class);
+            assertThat(context.getBean(DataSource.class)).isInstanceOf(HikariDataSource.class);
+        });
+    }
+}
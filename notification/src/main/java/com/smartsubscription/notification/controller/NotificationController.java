@@ -1,6 +1,6 @@
 package com.smartsubscription.notification.controller;
 
-import com.smartsubscription.notification.entity.Notification;
+import com.smartsubscription.notification.entity.NotificationView;
 import com.smartsubscription.notification.service.NotificationQueryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,11 +18,11 @@ public class NotificationController {
     NotificationQueryService notificationQueryService;
     
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Notification>> getUserNotifications(
+    public ResponseEntity<List<NotificationView>> getUserNotifications(
             @PathVariable String userId,
             @RequestParam(defaultValue = "false") boolean unreadOnly) {
         
-        List<Notification> notifications = unreadOnly 
+        List<NotificationView> notifications = unreadOnly 
                 ? notificationQueryService.getUnreadNotifications(userId)
                 : notificationQueryService.getAllUserNotifications(userId);
         
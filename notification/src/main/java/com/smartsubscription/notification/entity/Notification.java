@@ -1,8 +1,7 @@
 package com.smartsubscription.notification.entity;
 
+import com.smartsubscription.data.id.UuidV7Id;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,7 +19,7 @@ import java.util.UUID;
 @Entity
 public class Notification {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     private UUID id;
     private String userId;
     private String type;
@@ -0,0 +1,16 @@
+package com.smartsubscription.notification.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Read-only projection of a notification, serialized with the same fields as the entity
+public record NotificationView(
+        UUID id,
+        String userId,
+        String type,
+        String title,
+        String message,
+        boolean read,
+        LocalDateTime createdAt,
+        LocalDateTime readAt) {
+}
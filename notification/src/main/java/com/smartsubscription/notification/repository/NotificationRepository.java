@@ -1,6 +1,7 @@
 package com.smartsubscription.notification.repository;
 
 import com.smartsubscription.notification.entity.Notification;
+import com.smartsubscription.notification.entity.NotificationView;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -12,4 +13,8 @@ public interface NotificationRepository extends JpaRepository<Notification, Stri
     List<Notification> findByUserIdAndRead(String userId, boolean read);
     List<Notification> findByUserIdAndType(String userId, String type);
     long countByUserIdAndRead(String userId, boolean read);
-}
\ No newline at end of file
+
+    // Projections for the read endpoints; rows are never attached to the persistence context
+    List<NotificationView> findViewsByUserId(String userId);
+    List<NotificationView> findViewsByUserIdAndRead(String userId, boolean read);
+}
@@ -1,11 +1,13 @@
 package com.smartsubscription.notification.service;
 
 import com.smartsubscription.notification.entity.Notification;
+import com.smartsubscription.notification.entity.NotificationView;
 import com.smartsubscription.notification.repository.NotificationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,14 +20,17 @@ public class NotificationQueryService {
     @Autowired
     NotificationRepository notificationRepository;
     
-    public List<Notification> getAllUserNotifications(String userId) {
-        return notificationRepository.findByUserId(userId);
+    @Transactional(readOnly = true)
+    public List<NotificationView> getAllUserNotifications(String userId) {
+        return notificationRepository.findViewsByUserId(userId);
     }
     
-    public List<Notification> getUnreadNotifications(String userId) {
-        return notificationRepository.findByUserIdAndRead(userId, false);
+    @Transactional(readOnly = true)
+    public List<NotificationView> getUnreadNotifications(String userId) {
+        return notificationRepository.findViewsByUserIdAndRead(userId, false);
     }
     
+    @Transactional(readOnly = true)
     public long getUnreadCount(String userId) {
         return notificationRepository.countByUserIdAndRead(userId, false);
     }
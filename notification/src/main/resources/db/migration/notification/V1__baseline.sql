@@ -0,0 +1,12 @@
+-- Schema as previously created by ddl-auto; existing databases are baselined at this version
+
+CREATE TABLE notification (
+    id         uuid         NOT NULL PRIMARY KEY,
+    user_id    varchar(255),
+    type       varchar(255),
+    title      varchar(255),
+    message    varchar(255),
+    read       boolean      NOT NULL,
+    created_at timestamp(6),
+    read_at    timestamp(6)
+);
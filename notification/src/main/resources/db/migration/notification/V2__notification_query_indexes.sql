@@ -0,0 +1,15 @@
+-- Indexes for the per-user notification queries. Built concurrently so the migration does
+-- not block writes on a live table; Flyway runs this script outside a transaction.
+
+-- findByUserId / findByUserIdAndRead / countByUserIdAndRead
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notification_user_read
+    ON notification (user_id, read);
+
+-- Unread badge counts (countByUserIdAndRead(userId, false)) stay small as history grows
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notification_user_unread
+    ON notification (user_id)
+    WHERE read = false;
+
+-- findByUserIdAndType
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notification_user_type
+    ON notification (user_id, type);
@@ -3,7 +3,7 @@ package com.smartsubscription.subscription;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication(scanBasePackages = "com.smart-subscription")
+@SpringBootApplication(scanBasePackages = {"com.smartsubscription.subscription", "com.smartsubscription.data"})
 public class SubscriptionServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(SubscriptionServiceApplication.class, args);
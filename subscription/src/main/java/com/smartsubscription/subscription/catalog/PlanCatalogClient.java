@@ -0,0 +1,112 @@
+package com.smartsubscription.subscription.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.subscription.config.PlanCatalogTopicConfig;
+import com.smartsubscription.subscription.entity.SubscriptionPlan;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only plan catalog for services other than the subscription service. It
+ * replays the compacted plan-catalog topic from the start on every boot, then follows
+ * it, so the local view is always the latest published plan table without touching
+ * the subscription database. Reads are lock-free lookups in an immutable snapshot.
+ * <p>
+ * Enable with plan-catalog.client.enabled=true; the subscription service itself
+ * uses PlanCatalog instead.
+ */
+@Component
+@ConditionalOnProperty(name = "plan-catalog.client.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class PlanCatalogClient {
+
+    private static final Comparator<SubscriptionPlan> BY_SORT_ORDER = Comparator
+        .comparing((SubscriptionPlan plan) -> plan.getSortOrder() == null ? 0 : plan.getSortOrder())
+        .thenComparing(SubscriptionPlan::getCode);
+
+    private final ObjectMapper objectMapper;
+
+    // Written only by the listener thread
+    private final Map<String, SubscriptionPlan> plans = new HashMap<>();
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(Collections.emptyList()));
+
+    public List<SubscriptionPlan> getAll() {
+        return snapshot.get().all;
+    }
+
+    // Active plans ordered by sortOrder
+    public List<SubscriptionPlan> getActive() {
+        return snapshot.get().active;
+    }
+
+    public Optional<SubscriptionPlan> findById(String id) {
+        return Optional.ofNullable(snapshot.get().byId.get(id));
+    }
+
+    public Optional<SubscriptionPlan> findByCode(String code) {
+        return code == null ? Optional.empty() : Optional.ofNullable(snapshot.get().byCode.get(code.toUpperCase()));
+    }
+
+    // Manual assignment from offset 0: no consumer group state, every instance reads everything
+    @KafkaListener(id = "plan-catalog-client", groupId = "plan-catalog-client", batch = "true",
+        topicPartitions = @TopicPartition(topic = PlanCatalogTopicConfig.PLAN_CATALOG_TOPIC,
+            partitionOffsets = @PartitionOffset(partition = "0", initialOffset = "0")))
+    public void onRecords(List<ConsumerRecord<String, String>> records) {
+        for (ConsumerRecord<String, String> record : records) {
+            if (record.value() == null) {
+                plans.remove(record.key());
+                continue;
+            }
+            try {
+                plans.put(record.key(), objectMapper.readValue(record.value(), SubscriptionPlan.class));
+            } catch (IOException e) {
+                log.error("Skipping unreadable plan {} at offset {}: {}", record.key(), record.offset(), e.getMessage());
+            }
+        }
+        snapshot.set(new Snapshot(new ArrayList<>(plans.values())));
+        log.debug("Plan catalog client now holds {} plans", plans.size());
+    }
+
+    private static final class Snapshot {
+
+        private final List<SubscriptionPlan> all;
+        private final List<SubscriptionPlan> active;
+        private final Map<String, SubscriptionPlan> byId;
+        private final Map<String, SubscriptionPlan> byCode;
+
+        private Snapshot(List<SubscriptionPlan> plans) {
+            List<SubscriptionPlan> sorted = plans.stream().sorted(BY_SORT_ORDER).collect(Collectors.toList());
+            Map<String, SubscriptionPlan> ids = new HashMap<>();
+            Map<String, SubscriptionPlan> codes = new HashMap<>();
+            for (SubscriptionPlan plan : sorted) {
+                ids.put(plan.getId(), plan);
+                codes.put(plan.getCode().toUpperCase(), plan);
+            }
+            this.all = Collections.unmodifiableList(sorted);
+            this.active = sorted.stream()
+                .filter(plan -> Boolean.TRUE.equals(plan.getIsActive()))
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+            this.byId = Collections.unmodifiableMap(ids);
+            this.byCode = Collections.unmodifiableMap(codes);
+        }
+    }
+}
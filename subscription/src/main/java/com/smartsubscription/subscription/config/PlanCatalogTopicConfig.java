@@ -0,0 +1,23 @@
+package com.smartsubscription.subscription.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+// Compacted topic holding the latest version of every plan, keyed by plan id
+@Configuration
+public class PlanCatalogTopicConfig {
+
+    public static final String PLAN_CATALOG_TOPIC = "plan-catalog";
+
+    // A single partition lets readers replay the whole catalog with one manual assignment
+    @Bean
+    public NewTopic planCatalogTopic() {
+        return TopicBuilder.name(PLAN_CATALOG_TOPIC)
+            .partitions(1)
+            .replicas(1)
+            .compact()
+            .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.smartsubscription.subscription.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker pool for the scheduled subscription jobs. At most subscription.jobs.workers
+ * tasks run at once, whether they are backed by platform or virtual threads.
+ */
+@Component
+@Slf4j
+public class RenewalWorkerPool implements DisposableBean {
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int workers;
+
+    public RenewalWorkerPool(@Value("${subscription.jobs.workers:4}") int workers,
+                             @Value("${subscription.jobs.virtual-threads:false}") boolean virtualThreads) {
+        this.workers = workers;
+        this.permits = new Semaphore(workers);
+        this.executor = virtualThreads ? virtualThreadExecutor(workers) : fixedExecutor(workers);
+    }
+
+    public CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService fixedExecutor(int workers) {
+        return Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("renewal-worker-"));
+    }
+
+    // Looked up reflectively so the module still runs on JDKs without virtual threads
+    private static ExecutorService virtualThreadExecutor(int workers) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on this JVM, using {} platform workers", workers);
+            return fixedExecutor(workers);
+        }
+    }
+}
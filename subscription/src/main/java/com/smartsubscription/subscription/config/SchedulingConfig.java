@@ -0,0 +1,10 @@
+package com.smartsubscription.subscription.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Turns on the @Scheduled jobs in SubscriptionService and SubscriptionTimeline
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,43 @@
+package com.smartsubscription.subscription.controller;
+
+import com.smartsubscription.security.JwtUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+// Bearer-token check shared by the admin endpoints
+@Component
+@RequiredArgsConstructor
+public class AdminTokenValidator {
+
+    private final JwtUtil jwtUtil;
+
+    // The reason the header does not carry a valid ADMIN token, or null when it does
+    public String validate(String authHeader) {
+        // 1. Check if Authorization header exists
+        if (authHeader == null || authHeader.isEmpty()) {
+            return "Missing Authorization header";
+        }
+
+        // 2. Extract token from "Bearer <token>"
+        String token;
+        if (authHeader.startsWith("Bearer ")) {
+            token = authHeader.substring(7);
+        } else {
+            return "Invalid Authorization format. Use: Bearer <token>";
+        }
+
+        // 3. Validate JWT token
+        if (!jwtUtil.isTokenValid(token)) {
+            return "Invalid or expired token";
+        }
+
+        // 4. Extract role from token
+        String role = jwtUtil.extractRole(token);
+        if (role == null || !role.equalsIgnoreCase("ADMIN")) {
+            return "Admin access required";
+        }
+
+        // All checks passed
+        return null;
+    }
+}
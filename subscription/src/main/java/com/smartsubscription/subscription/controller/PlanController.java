@@ -1,9 +1,10 @@
 package com.smartsubscription.subscription.controller;
-import com.smartsubscription.security.JwtUtil;
 import com.smartsubscription.subscription.entity.SubscriptionPlan;
+import com.smartsubscription.subscription.service.PlanResponseCache;
 import com.smartsubscription.subscription.service.PlanService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,23 +18,32 @@ public class PlanController {
      @Autowired
       PlanService planService;
 
-    private final JwtUtil jwtUtil;
+    private final AdminTokenValidator adminTokenValidator;
+    private final PlanResponseCache planResponseCache;
 
     // ========== PUBLIC ENDPOINTS (No token needed) ==========
 
     @GetMapping("/getAllPlans")
-    public ResponseEntity<List<SubscriptionPlan>> getAllPlans() {
-        return ResponseEntity.ok(planService.getAllPlans());
+    public ResponseEntity<byte[]> getAllPlans(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return planResponseCache.respond("all", planService::getAllPlans, ifNoneMatch, acceptEncoding);
     }
 
     @GetMapping("/{planId}")
-    public ResponseEntity<SubscriptionPlan> getPlanById(@PathVariable String planId) {
-        return ResponseEntity.ok(planService.getPlanById(planId));
+    public ResponseEntity<byte[]> getPlanById(
+            @PathVariable String planId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return planResponseCache.respond("id:" + planId, () -> planService.getPlanById(planId),
+                ifNoneMatch, acceptEncoding);
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<SubscriptionPlan>> getActivePlans() {
-        return ResponseEntity.ok(planService.getActivePlans());
+    public ResponseEntity<byte[]> getActivePlans(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return planResponseCache.respond("active", planService::getActivePlans, ifNoneMatch, acceptEncoding);
     }
 
     // ========== ADMIN ENDPOINTS (Need ADMIN token) ==========
@@ -44,7 +54,7 @@ public class PlanController {
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
         // Validate token and check if ADMIN
-        String error = validateAdminToken(authHeader);
+        String error = adminTokenValidator.validate(authHeader);
         if (error != null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
         }
@@ -59,7 +69,7 @@ public class PlanController {
             @RequestBody SubscriptionPlan plan,
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
-        String error = validateAdminToken(authHeader);
+        String error = adminTokenValidator.validate(authHeader);
         if (error != null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
         }
@@ -74,7 +84,7 @@ public class PlanController {
             @PathVariable String planId,
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
-        String error = validateAdminToken(authHeader);
+        String error = adminTokenValidator.validate(authHeader);
         if (error != null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
         }
@@ -88,7 +98,7 @@ public class PlanController {
             @PathVariable String planId,
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
-        String error = validateAdminToken(authHeader);
+        String error = adminTokenValidator.validate(authHeader);
         if (error != null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
         }
@@ -96,35 +106,4 @@ public class PlanController {
         SubscriptionPlan plan = planService.togglePlanActive(planId);
         return ResponseEntity.ok(plan);
     }
-
-    // ========== HELPER METHOD ==========
-
-    private String validateAdminToken(String authHeader) {
-        // 1. Check if Authorization header exists
-        if (authHeader == null || authHeader.isEmpty()) {
-            return "Missing Authorization header";
-        }
-
-        // 2. Extract token from "Bearer <token>"
-        String token;
-        if (authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
-        } else {
-            return "Invalid Authorization format. Use: Bearer <token>";
-        }
-
-        // 3. Validate JWT token
-        if (!jwtUtil.isTokenValid(token)) {
-            return "Invalid or expired token";
-        }
-
-        // 4. Extract role from token
-        String role = jwtUtil.extractRole(token);
-        if (role == null || !role.equalsIgnoreCase("ADMIN")) {
-            return "Admin access required";
-        }
-
-        // All checks passed
-        return null;
-    }
 }
\ No newline at end of file
@@ -1,12 +1,20 @@
 package com.smartsubscription.subscription.controller;
 
+import com.smartsubscription.subscription.entity.CreateSubscriptionRequest;
 import com.smartsubscription.subscription.entity.Subscription;
-import com.smartsubscription.subscription.entity.SubscriptionPlan;
+import com.smartsubscription.subscription.entity.SubscriptionPage;
+import com.smartsubscription.subscription.entity.UpdateSubscriptionRequest;
+import com.smartsubscription.data.idempotency.IdempotencyService;
+import com.smartsubscription.subscription.service.PlanResponseCache;
 import com.smartsubscription.subscription.service.SubscriptionService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -17,14 +25,19 @@ import java.util.Map;
 public class SubscriptionController {
     
     private final SubscriptionService subscriptionService;
+    private final PlanResponseCache planResponseCache;
+    private final IdempotencyService idempotencyService;
     
-    // Create subscription
+    // Create subscription; retries carrying the same Idempotency-Key replay the first response
     @PostMapping("/subscribe")
-    public ResponseEntity<Subscription> createSubscription(
+    public ResponseEntity<?> createSubscription(
             @RequestHeader("X-User-Id") String userId,
-            @RequestBody Map<String, Object> request) {
-        Subscription subscription = subscriptionService.createSubscription(userId, request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(subscription);
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody CreateSubscriptionRequest request) {
+        return idempotencyService.execute("subscribe", userId, idempotencyKey, request, () -> {
+            Subscription subscription = subscriptionService.createSubscription(userId, request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(subscription);
+        });
     }
     
     // Get user subscriptions
@@ -35,6 +48,25 @@ public class SubscriptionController {
         return ResponseEntity.ok(subscriptions);
     }
     
+    // Get user subscriptions one keyset page at a time
+    @GetMapping("/getSubscriptionsPage")
+    public ResponseEntity<SubscriptionPage> getUserSubscriptionsPage(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(subscriptionService.getUserSubscriptionsPage(userId, cursor, size));
+    }
+    
+    // Stream all user subscriptions as newline-delimited JSON
+    @GetMapping(value = "/streamSubscriptions", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamUserSubscriptions(
+            @RequestHeader("X-User-Id") String userId) {
+        StreamingResponseBody body = out -> subscriptionService.streamUserSubscriptions(userId, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+    
     // Get subscription by ID
     @GetMapping("getSubscription/{subscriptionId}")
     public ResponseEntity<Subscription> getSubscription(
@@ -49,7 +81,7 @@ public class SubscriptionController {
     public ResponseEntity<Subscription> updateSubscription(
             @PathVariable String subscriptionId,
             @RequestHeader("X-User-Id") String userId,
-            @RequestBody Map<String, Object> updates) {
+            @Valid @RequestBody UpdateSubscriptionRequest updates) {
         Subscription subscription = subscriptionService.updateSubscription(
             subscriptionId, userId, updates);
         return ResponseEntity.ok(subscription);
@@ -99,15 +131,19 @@ public class SubscriptionController {
     
     // Get all plans (public endpoint)
     @GetMapping("/plans")
-    public ResponseEntity<List<SubscriptionPlan>> getAllPlans() {
-        List<SubscriptionPlan> plans = subscriptionService.getAllPlans();
-        return ResponseEntity.ok(plans);
+    public ResponseEntity<byte[]> getAllPlans(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return planResponseCache.respond("active", subscriptionService::getAllPlans, ifNoneMatch, acceptEncoding);
     }
     
     // Get plan by code (public endpoint)
     @GetMapping("/plans/{planCode}")
-    public ResponseEntity<SubscriptionPlan> getPlanByCode(@PathVariable String planCode) {
-        SubscriptionPlan plan = subscriptionService.getPlanByCode(planCode);
-        return ResponseEntity.ok(plan);
+    public ResponseEntity<byte[]> getPlanByCode(
+            @PathVariable String planCode,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return planResponseCache.respond("code:" + planCode.toUpperCase(),
+            () -> subscriptionService.getPlanByCode(planCode), ifNoneMatch, acceptEncoding);
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.smartsubscription.subscription.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.subscription.service.SubscriptionImportReader;
+import com.smartsubscription.subscription.service.SubscriptionImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/subscriptions")
+@RequiredArgsConstructor
+public class SubscriptionImportController {
+
+    private static final String TEXT_CSV = "text/csv";
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final SubscriptionImportService subscriptionImportService;
+    private final AdminTokenValidator adminTokenValidator;
+    private final ObjectMapper objectMapper;
+
+    // Body is a JSON array or CSV of userId,planId,trialDays,autoRenew; one NDJSON result line per row
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, TEXT_CSV})
+    public ResponseEntity<?> importSubscriptions(
+            HttpServletRequest request,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+
+        String error = adminTokenValidator.validate(authHeader);
+        if (error != null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+
+        boolean csv = request.getContentType() != null
+                && MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(TEXT_CSV));
+        StreamingResponseBody body = out -> subscriptionImportService.importSubscriptions(csv
+                ? SubscriptionImportReader.csv(request.getInputStream())
+                : SubscriptionImportReader.json(request.getInputStream(), objectMapper), out);
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+}
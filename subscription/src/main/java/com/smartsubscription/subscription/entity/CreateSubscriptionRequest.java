@@ -0,0 +1,20 @@
+package com.smartsubscription.subscription.entity;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.*;
+
+// Body of POST /subscribe; trialDays defaults to the plan's, autoRenew to true
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateSubscriptionRequest {
+
+    @NotBlank(message = "Plan ID is required")
+    private String planId;
+
+    @PositiveOrZero(message = "Trial days must not be negative")
+    private Integer trialDays;
+
+    private Boolean autoRenew;
+}
@@ -0,0 +1,23 @@
+package com.smartsubscription.subscription.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Lightweight row used by the scheduled jobs; never attached to a persistence context
+@Getter
+@AllArgsConstructor
+public class DueSubscription {
+
+    private final String id;
+
+    private final String userId;
+
+    private final String billingCycle;
+
+    private final Boolean autoRenew;
+
+    // next_billing_date or trial_end_date, depending on the scan
+    private final LocalDateTime dueAt;
+}
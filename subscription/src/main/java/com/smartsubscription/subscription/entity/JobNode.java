@@ -0,0 +1,24 @@
+package com.smartsubscription.subscription.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// A live subscription service instance, used to size each instance's share of the shards
+@Entity
+@Table(name = "job_nodes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobNode {
+
+    @Id
+    @Column(name = "node_id")
+    private String nodeId;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+}
@@ -0,0 +1,65 @@
+package com.smartsubscription.subscription.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Charge owed for one renewed billing period, sent to the Payment service
+@Entity
+// At most one charge per period that is not FAILED: uk_renewal_charges_open_period, a partial index
+@Table(name = "renewal_charges",
+    indexes = {
+        @Index(name = "idx_renewal_charges_pending", columnList = "status, updated_at"),
+        @Index(name = "idx_renewal_charges_period", columnList = "subscription_id, period_end")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenewalCharge {
+
+    @Id
+    private String id;
+
+    @Column(name = "subscription_id", nullable = false)
+    private String subscriptionId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private String currency;
+
+    // next_billing_date after the renewal; the subscription updates are guarded by it
+    @Column(name = "period_end", nullable = false)
+    private LocalDateTime periodEnd;
+
+    // PENDING, SUCCEEDED or FAILED
+    @Column(nullable = false)
+    private String status;
+
+    // Times sent to Payment in this round
+    @Column(nullable = false)
+    private Integer attempts;
+
+    // Round of the period's charging: 0 at renewal, one more per retry of a failed charge
+    @Column(nullable = false)
+    private Integer retry;
+
+    @Column(name = "transaction_id")
+    private String transactionId;
+
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
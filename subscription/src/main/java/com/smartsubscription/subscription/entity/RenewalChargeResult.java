@@ -0,0 +1,18 @@
+package com.smartsubscription.subscription.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Outcome of a renewal charge as reported back by the Payment service
+@Getter
+@AllArgsConstructor
+public class RenewalChargeResult {
+
+    private final String chargeId;
+
+    private final boolean succeeded;
+
+    private final String transactionId;
+
+    private final String error;
+}
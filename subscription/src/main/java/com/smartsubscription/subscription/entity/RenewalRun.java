@@ -0,0 +1,45 @@
+package com.smartsubscription.subscription.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One run of a scheduled job on one instance; totals are filled in when every partition is done
+@Entity
+@Table(name = "renewal_runs", indexes = @Index(name = "idx_renewal_runs_job_status", columnList = "job, status"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenewalRun {
+
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String job;
+
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+
+    // RUNNING or COMPLETED
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    private Long renewed;
+
+    private Long expired;
+
+    private Long failed;
+}
@@ -0,0 +1,51 @@
+package com.smartsubscription.subscription.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Outcome of one chunk of a run, kept for auditing failed chunks
+@Entity
+@Table(name = "renewal_run_chunks",
+    indexes = @Index(name = "idx_renewal_run_chunks_run", columnList = "run_id, partition_id, seq"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenewalRunChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private String runId;
+
+    @Column(name = "partition_id", nullable = false)
+    private Integer partitionId;
+
+    @Column(nullable = false)
+    private Integer seq;
+
+    // EXPIRE or RENEW
+    @Column(nullable = false)
+    private String kind;
+
+    // COMMITTED or FAILED
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "first_id")
+    private String firstId;
+
+    @Column(name = "last_id")
+    private String lastId;
+
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,62 @@
+package com.smartsubscription.subscription.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Checkpoint of one partition of a run, written in the same transaction as each chunk
+@Entity
+@Table(name = "renewal_run_partitions",
+    indexes = @Index(name = "idx_renewal_run_partitions_phase", columnList = "partition_id, phase"))
+@IdClass(RenewalRunPartition.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenewalRunPartition {
+
+    @Id
+    @Column(name = "run_id")
+    private String runId;
+
+    @Id
+    @Column(name = "partition_id")
+    private Integer partitionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RunPhase phase;
+
+    // Keyset position of the last renewal chunk handled; the run resumes after it
+    @Column(name = "high_water_due_at")
+    private LocalDateTime highWaterDueAt;
+
+    @Column(name = "high_water_id")
+    private String highWaterId;
+
+    @Column(nullable = false)
+    private Long renewed;
+
+    @Column(nullable = false)
+    private Long expired;
+
+    @Column(nullable = false)
+    private Long failed;
+
+    @Column(nullable = false)
+    private Integer chunks;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String runId;
+        private Integer partitionId;
+    }
+}
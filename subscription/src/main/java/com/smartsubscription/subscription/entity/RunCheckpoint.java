@@ -0,0 +1,27 @@
+package com.smartsubscription.subscription.entity;
+
+import com.smartsubscription.subscription.repository.DueScan;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Unfinished partition of an interrupted run, as read back from the ledger
+@Getter
+@AllArgsConstructor
+public class RunCheckpoint {
+
+    private final String runId;
+
+    private final DueScan job;
+
+    private final LocalDateTime cutoff;
+
+    private final int partition;
+
+    private final RunPhase phase;
+
+    private final LocalDateTime highWaterDueAt;
+
+    private final String highWaterId;
+}
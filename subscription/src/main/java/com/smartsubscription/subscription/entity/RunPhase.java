@@ -0,0 +1,9 @@
+package com.smartsubscription.subscription.entity;
+
+// Where a partition of a renewal run got to; EXPIRING and RENEWING can be resumed
+public enum RunPhase {
+    EXPIRING,
+    RENEWING,
+    DONE,
+    SUPERSEDED
+}
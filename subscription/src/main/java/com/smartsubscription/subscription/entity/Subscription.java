@@ -1,5 +1,6 @@
 package com.smartsubscription.subscription.entity;
 
+import com.smartsubscription.data.id.UuidV7Id;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,14 +11,15 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "subscriptions")
+@Table(name = "subscriptions",
+    indexes = @Index(name = "idx_subscriptions_user_created", columnList = "user_id, created_at, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Subscription {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     private String id;
     
     @Column(name = "user_id", nullable = false)
@@ -63,6 +65,10 @@ public class Subscription {
     @Column(name = "cancellation_reason")
     private String cancellationReason;
     
+    // Bumped by every write, including the bulk SQL of the scheduled jobs
+    @Version
+    private Long version;
+    
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
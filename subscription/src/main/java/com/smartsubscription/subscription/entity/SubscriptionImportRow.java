@@ -0,0 +1,22 @@
+package com.smartsubscription.subscription.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// One input row of a bulk import; error is set when the row could not be parsed
+@Getter
+@AllArgsConstructor
+public class SubscriptionImportRow {
+
+    private final int line;
+
+    private final String userId;
+
+    private final String planId;
+
+    private final Integer trialDays;
+
+    private final Boolean autoRenew;
+
+    private final String error;
+}
@@ -0,0 +1,16 @@
+package com.smartsubscription.subscription.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// One keyset page of a user's subscriptions; nextCursor is null on the last page
+@Getter
+@AllArgsConstructor
+public class SubscriptionPage {
+
+    private final List<Subscription> items;
+
+    private final String nextCursor;
+}
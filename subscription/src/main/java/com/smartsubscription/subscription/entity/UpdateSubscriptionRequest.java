@@ -0,0 +1,16 @@
+package com.smartsubscription.subscription.entity;
+
+import jakarta.validation.constraints.Pattern;
+import lombok.*;
+
+// Body of PUT /update/{subscriptionId}; fields left null are not changed
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpdateSubscriptionRequest {
+
+    @Pattern(regexp = ".*\\S.*", message = "Plan ID must not be blank")
+    private String planId;
+
+    private Boolean autoRenew;
+}
@@ -0,0 +1,14 @@
+package com.smartsubscription.subscription.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published inside the transaction that created, updated or deleted a plan
+@Getter
+@AllArgsConstructor
+public class PlanChangedEvent {
+
+    private final String planId;
+
+    private final boolean deleted;
+}
@@ -0,0 +1,14 @@
+package com.smartsubscription.subscription.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+// Published when this instance takes over shards, e.g. from an instance that died
+@Getter
+@AllArgsConstructor
+public class ShardsAcquiredEvent {
+
+    private final Set<Integer> shards;
+}
@@ -0,0 +1,19 @@
+package com.smartsubscription.subscription.event;
+
+import com.smartsubscription.subscription.entity.DueSubscription;
+import com.smartsubscription.subscription.repository.DueScan;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Published once per committed bulk expiry batch, with the rows the UPDATE returned
+@Getter
+@AllArgsConstructor
+public class SubscriptionsExpiredEvent {
+
+    // RENEWAL for non-auto-renew subscriptions past their billing date, TRIAL_ENDING for trials
+    private final DueScan reason;
+
+    private final List<DueSubscription> subscriptions;
+}
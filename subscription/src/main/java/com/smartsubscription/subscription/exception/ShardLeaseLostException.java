@@ -0,0 +1,9 @@
+package com.smartsubscription.subscription.exception;
+
+// Thrown inside a job transaction when the instance no longer holds the shard's lease
+public class ShardLeaseLostException extends RuntimeException {
+
+    public ShardLeaseLostException(int shard) {
+        super("Lease on shard " + shard + " was lost");
+    }
+}
@@ -0,0 +1,24 @@
+package com.smartsubscription.subscription.repository;
+
+// The two due-date scans run by the scheduled jobs
+public enum DueScan {
+
+    RENEWAL("ACTIVE", "next_billing_date"),
+    TRIAL_ENDING("TRIAL", "trial_end_date");
+
+    private final String status;
+    private final String dueColumn;
+
+    DueScan(String status, String dueColumn) {
+        this.status = status;
+        this.dueColumn = dueColumn;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getDueColumn() {
+        return dueColumn;
+    }
+}
@@ -0,0 +1,177 @@
+package com.smartsubscription.subscription.repository;
+
+import com.smartsubscription.subscription.entity.RenewalCharge;
+import com.smartsubscription.subscription.entity.RenewalChargeResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Renewal charges and their results. Charges are created in the transaction that
+ * renews the subscriptions; results are applied in batches, and every subscription
+ * update is guarded by the billing period the charge was for. A failed charge stays
+ * FAILED; retrying its period takes a new charge, or reopens the same one when Payment
+ * never answered, so a late answer for it is still found under its id.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RenewalChargeRepository {
+
+    // One charge per renewed row: start_date is only equal to renewedAt for rows renewed just now
+    private static final String CREATE_FOR_RENEWED =
+        "INSERT INTO renewal_charges (id, subscription_id, user_id, amount, currency, period_end, status, attempts, " +
+        "created_at, updated_at) " +
+        "SELECT gen_random_uuid()::text, id, user_id, price, currency, next_billing_date, 'PENDING', 1, now(), now() " +
+        "FROM subscriptions WHERE id IN (%s) AND status = 'ACTIVE' AND start_date = ? " +
+        "ON CONFLICT (subscription_id, period_end) WHERE status <> 'FAILED' DO NOTHING " +
+        "RETURNING %s";
+
+    private static final String CHARGE_COLUMNS =
+        "id, subscription_id, user_id, amount, currency, period_end, status, attempts, retry, transaction_id, error, " +
+        "created_at, updated_at";
+
+    private static final String CLAIM_STALE =
+        "UPDATE renewal_charges SET attempts = attempts + 1, updated_at = now() WHERE id IN (" +
+        "SELECT id FROM renewal_charges WHERE status = 'PENDING' AND updated_at < now() - ? * interval '1 millisecond' " +
+        "AND attempts < ? ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING " + CHARGE_COLUMNS;
+
+    // Sent as often as allowed and still unanswered; locked until the caller fails them
+    private static final String CLAIM_EXHAUSTED =
+        "SELECT " + CHARGE_COLUMNS + " FROM renewal_charges WHERE status = 'PENDING' " +
+        "AND updated_at < now() - ? * interval '1 millisecond' AND attempts >= ? " +
+        "ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    // The latest charge of a past-due subscription's current period, failed a while ago
+    private static final String CLAIM_RETRIES =
+        "SELECT c." + CHARGE_COLUMNS.replace(", ", ", c.") + " FROM renewal_charges c " +
+        "JOIN subscriptions s ON s.id = c.subscription_id AND s.next_billing_date = c.period_end " +
+        "WHERE s.status = 'PAST_DUE' AND c.status = 'FAILED' AND c.retry < ? " +
+        "AND c.updated_at < now() - ? * interval '1 millisecond' " +
+        "AND NOT EXISTS (SELECT 1 FROM renewal_charges o WHERE o.subscription_id = c.subscription_id " +
+        "AND o.period_end = c.period_end AND (o.status <> 'FAILED' OR o.retry > c.retry)) " +
+        "ORDER BY c.updated_at LIMIT ? FOR UPDATE OF c SKIP LOCKED";
+
+    private static final String REOPEN =
+        "UPDATE renewal_charges SET status = 'PENDING', attempts = 1, retry = retry + 1, transaction_id = NULL, " +
+        "error = NULL, updated_at = now() WHERE id = ? AND status = 'FAILED' RETURNING " + CHARGE_COLUMNS;
+
+    private static final String CREATE_RETRY =
+        "INSERT INTO renewal_charges (id, subscription_id, user_id, amount, currency, period_end, status, attempts, " +
+        "retry, created_at, updated_at) " +
+        "SELECT gen_random_uuid()::text, subscription_id, user_id, amount, currency, period_end, 'PENDING', 1, " +
+        "retry + 1, now(), now() FROM renewal_charges WHERE id = ? AND status = 'FAILED' " +
+        "ON CONFLICT (subscription_id, period_end) WHERE status <> 'FAILED' DO NOTHING " +
+        "RETURNING " + CHARGE_COLUMNS;
+
+    private static final String COMPLETE_CHARGE =
+        "UPDATE renewal_charges SET status = ?, transaction_id = ?, error = ?, updated_at = now() " +
+        "WHERE id = ? AND status = 'PENDING'";
+
+    private static final String MARK_PAST_DUE =
+        "UPDATE subscriptions s SET status = 'PAST_DUE', updated_at = now(), version = s.version + 1 FROM renewal_charges c " +
+        "WHERE c.id = ? AND s.id = c.subscription_id AND s.next_billing_date = c.period_end AND s.status = 'ACTIVE'";
+
+    private static final String REACTIVATE =
+        "UPDATE subscriptions s SET status = 'ACTIVE', updated_at = now(), version = s.version + 1 FROM renewal_charges c " +
+        "WHERE c.id = ? AND s.id = c.subscription_id AND s.next_billing_date = c.period_end AND s.status = 'PAST_DUE'";
+
+    private static final RowMapper<RenewalCharge> CHARGE_ROW_MAPPER = (rs, rowNum) -> new RenewalCharge(
+        rs.getString("id"),
+        rs.getString("subscription_id"),
+        rs.getString("user_id"),
+        rs.getBigDecimal("amount"),
+        rs.getString("currency"),
+        rs.getTimestamp("period_end").toLocalDateTime(),
+        rs.getString("status"),
+        rs.getInt("attempts"),
+        rs.getInt("retry"),
+        rs.getString("transaction_id"),
+        rs.getString("error"),
+        rs.getTimestamp("created_at").toLocalDateTime(),
+        rs.getTimestamp("updated_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Call in the renewing transaction, with the start date the renewal wrote
+    public List<RenewalCharge> createForRenewed(Collection<String> subscriptionIds, LocalDateTime renewedAt) {
+        if (subscriptionIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String sql = String.format(CREATE_FOR_RENEWED,
+            String.join(", ", Collections.nCopies(subscriptionIds.size(), "?")), CHARGE_COLUMNS);
+        List<Object> args = new ArrayList<>(subscriptionIds);
+        args.add(Timestamp.valueOf(renewedAt));
+        return jdbcTemplate.query(sql, CHARGE_ROW_MAPPER, args.toArray());
+    }
+
+    // Pending charges nobody has heard back about for a while; touching them keeps other instances off
+    public List<RenewalCharge> claimStale(long olderThanMillis, int maxAttempts, int limit) {
+        return jdbcTemplate.query(CLAIM_STALE, CHARGE_ROW_MAPPER, olderThanMillis, maxAttempts, limit);
+    }
+
+    // Pending charges sent maxAttempts times without an answer; call in the transaction that fails them
+    public List<RenewalCharge> claimExhausted(long olderThanMillis, int maxAttempts, int limit) {
+        return jdbcTemplate.query(CLAIM_EXHAUSTED, CHARGE_ROW_MAPPER, olderThanMillis, maxAttempts, limit);
+    }
+
+    /**
+     * Opens the next round for past-due subscriptions whose current period's charge
+     * failed at least retryAfterMillis ago, for up to maxRetries rounds per period, and
+     * returns the pending charges to send. A charge that failed for want of an answer
+     * (error {@code noResultError}) is reopened under its own id, since Payment may
+     * still have it; any other failure gets a new charge.
+     */
+    public List<RenewalCharge> createRetries(long retryAfterMillis, int maxRetries, int limit, String noResultError) {
+        List<RenewalCharge> retries = new ArrayList<>();
+        for (RenewalCharge failed : jdbcTemplate.query(CLAIM_RETRIES, CHARGE_ROW_MAPPER,
+                maxRetries, retryAfterMillis, limit)) {
+            String sql = noResultError.equals(failed.getError()) ? REOPEN : CREATE_RETRY;
+            retries.addAll(jdbcTemplate.query(sql, CHARGE_ROW_MAPPER, failed.getId()));
+        }
+        return retries;
+    }
+
+    /**
+     * Records the results and moves the subscriptions: failed charges put an ACTIVE
+     * subscription PAST_DUE, successful ones bring a PAST_DUE one back. Results for
+     * charges that were already completed are ignored. Returns {past due, reactivated}.
+     */
+    public int[] applyResults(List<RenewalChargeResult> results) {
+        List<Object[]> rows = new ArrayList<>(results.size());
+        for (RenewalChargeResult result : results) {
+            rows.add(new Object[]{result.isSucceeded() ? "SUCCEEDED" : "FAILED", result.getTransactionId(),
+                result.getError(), result.getChargeId()});
+        }
+        int[] completed = jdbcTemplate.batchUpdate(COMPLETE_CHARGE, rows);
+
+        List<Object[]> failed = new ArrayList<>();
+        List<Object[]> succeeded = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (completed[i] != 0) {
+                RenewalChargeResult result = results.get(i);
+                (result.isSucceeded() ? succeeded : failed).add(new Object[]{result.getChargeId()});
+            }
+        }
+        return new int[]{
+            failed.isEmpty() ? 0 : sum(jdbcTemplate.batchUpdate(MARK_PAST_DUE, failed)),
+            succeeded.isEmpty() ? 0 : sum(jdbcTemplate.batchUpdate(REACTIVATE, succeeded))
+        };
+    }
+
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return total;
+    }
+}
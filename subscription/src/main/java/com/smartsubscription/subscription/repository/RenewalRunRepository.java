@@ -0,0 +1,144 @@
+package com.smartsubscription.subscription.repository;
+
+import com.smartsubscription.subscription.entity.RunCheckpoint;
+import com.smartsubscription.subscription.entity.RunPhase;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ledger of scheduled job runs: one row per run, a checkpoint row per partition and
+ * a row per chunk. Chunk statements are meant to run inside the chunk's own
+ * transaction, so the checkpoint never disagrees with what was committed.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RenewalRunRepository {
+
+    private static final String INSERT_RUN =
+        "INSERT INTO renewal_runs (id, job, node_id, cutoff, status, started_at) VALUES (?, ?, ?, ?, 'RUNNING', now())";
+
+    private static final String INSERT_PARTITION =
+        "INSERT INTO renewal_run_partitions (run_id, partition_id, phase, renewed, expired, failed, chunks, updated_at) " +
+        "VALUES (?, ?, ?, 0, 0, 0, 0, now())";
+
+    private static final String OPEN_PHASES = "('EXPIRING', 'RENEWING')";
+
+    private static final String SUPERSEDE =
+        "UPDATE renewal_run_partitions p SET phase = 'SUPERSEDED', updated_at = now() FROM renewal_runs r " +
+        "WHERE r.id = p.run_id AND r.job = ? AND p.phase IN " + OPEN_PHASES + " AND p.partition_id IN (%s) " +
+        "RETURNING p.run_id";
+
+    private static final String RECORD_PROGRESS =
+        "UPDATE renewal_run_partitions SET chunks = chunks + 1, renewed = renewed + ?, expired = expired + ?, " +
+        "failed = failed + ?, high_water_due_at = COALESCE(?, high_water_due_at), " +
+        "high_water_id = COALESCE(?, high_water_id), updated_at = now() " +
+        "WHERE run_id = ? AND partition_id = ? RETURNING chunks";
+
+    private static final String INSERT_CHUNK =
+        "INSERT INTO renewal_run_chunks (run_id, partition_id, seq, kind, status, first_id, last_id, row_count, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, now())";
+
+    private static final String UPDATE_PHASE =
+        "UPDATE renewal_run_partitions SET phase = ?, updated_at = now() " +
+        "WHERE run_id = ? AND partition_id = ? AND phase IN " + OPEN_PHASES;
+
+    private static final String COMPLETE_RUN =
+        "UPDATE renewal_runs r SET status = 'COMPLETED', finished_at = now(), " +
+        "renewed = (SELECT sum(renewed) FROM renewal_run_partitions WHERE run_id = r.id), " +
+        "expired = (SELECT sum(expired) FROM renewal_run_partitions WHERE run_id = r.id), " +
+        "failed = (SELECT sum(failed) FROM renewal_run_partitions WHERE run_id = r.id) " +
+        "WHERE r.id = ? AND r.status = 'RUNNING' AND NOT EXISTS (" +
+        "SELECT 1 FROM renewal_run_partitions WHERE run_id = r.id AND phase IN " + OPEN_PHASES + ")";
+
+    private static final String SELECT_RESUMABLE =
+        "SELECT r.id, r.job, r.cutoff, p.partition_id, p.phase, p.high_water_due_at, p.high_water_id " +
+        "FROM renewal_run_partitions p JOIN renewal_runs r ON r.id = p.run_id " +
+        "WHERE p.phase IN " + OPEN_PHASES + " AND p.partition_id IN (%s) " +
+        "ORDER BY r.started_at, p.partition_id";
+
+    private static final RowMapper<RunCheckpoint> CHECKPOINT_ROW_MAPPER = (rs, rowNum) -> {
+        Timestamp highWaterDueAt = rs.getTimestamp("high_water_due_at");
+        return new RunCheckpoint(
+            rs.getString("id"),
+            DueScan.valueOf(rs.getString("job")),
+            rs.getTimestamp("cutoff").toLocalDateTime(),
+            rs.getInt("partition_id"),
+            RunPhase.valueOf(rs.getString("phase")),
+            highWaterDueAt == null ? null : highWaterDueAt.toLocalDateTime(),
+            rs.getString("high_water_id"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createRun(String runId, DueScan job, String nodeId, LocalDateTime cutoff,
+                          Collection<Integer> partitions) {
+        jdbcTemplate.update(INSERT_RUN, runId, job.name(), nodeId, Timestamp.valueOf(cutoff));
+        List<Object[]> rows = new ArrayList<>(partitions.size());
+        for (Integer partition : partitions) {
+            rows.add(new Object[]{runId, partition, RunPhase.EXPIRING.name()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_PARTITION, rows);
+    }
+
+    /**
+     * Retires unfinished partitions of earlier runs of the job: a newer run covers
+     * everything they would have processed. Runs left with no open partitions are closed.
+     */
+    public void supersede(DueScan job, Collection<Integer> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        List<Object> args = new ArrayList<>(partitions.size() + 1);
+        args.add(job.name());
+        args.addAll(partitions);
+        List<String> runIds = jdbcTemplate.queryForList(String.format(SUPERSEDE, placeholders(partitions.size())),
+            String.class, args.toArray());
+        runIds.stream().distinct().forEach(this::completeRunIfDone);
+    }
+
+    /**
+     * Adds a chunk's outcome to the partition checkpoint and logs the chunk. A null
+     * high-water mark leaves the previous one in place.
+     */
+    public void recordChunk(String runId, int partition, String kind, String status,
+                            String firstId, String lastId, int rows,
+                            long renewed, long expired, long failed,
+                            LocalDateTime highWaterDueAt, String highWaterId) {
+        Integer seq = jdbcTemplate.queryForObject(RECORD_PROGRESS, Integer.class,
+            renewed, expired, failed,
+            highWaterDueAt == null ? null : Timestamp.valueOf(highWaterDueAt), highWaterId,
+            runId, partition);
+        jdbcTemplate.update(INSERT_CHUNK, runId, partition, seq, kind, status, firstId, lastId, rows);
+    }
+
+    public void updatePhase(String runId, int partition, RunPhase phase) {
+        jdbcTemplate.update(UPDATE_PHASE, phase.name(), runId, partition);
+    }
+
+    // Closes the run and fills in its totals once no partition is left open
+    public boolean completeRunIfDone(String runId) {
+        return jdbcTemplate.update(COMPLETE_RUN, runId) > 0;
+    }
+
+    // Open partitions among the given ones, of any job and run
+    public List<RunCheckpoint> findResumable(Collection<Integer> partitions) {
+        if (partitions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.query(String.format(SELECT_RESUMABLE, placeholders(partitions.size())),
+            CHECKPOINT_ROW_MAPPER, partitions.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.smartsubscription.subscription.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Lease and heartbeat statements for job_shard_leases and job_nodes. All expiry
+ * checks use the database clock, so instances never have to agree on time.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ShardLeaseRepository {
+
+    private static final String HEARTBEAT =
+        "INSERT INTO job_nodes (node_id, heartbeat_at) VALUES (?, now()) " +
+        "ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = now()";
+
+    private static final String COUNT_LIVE_NODES =
+        "SELECT count(*) FROM job_nodes WHERE heartbeat_at > now() - ? * interval '1 millisecond'";
+
+    private static final String DELETE_DEAD_NODES =
+        "DELETE FROM job_nodes WHERE heartbeat_at < now() - ? * interval '1 millisecond'";
+
+    private static final String DELETE_NODE =
+        "DELETE FROM job_nodes WHERE node_id = ?";
+
+    private static final String EXTEND_OWN_LEASES =
+        "UPDATE job_shard_leases SET expires_at = now() + ? * interval '1 millisecond' " +
+        "WHERE owner_id = ? AND expires_at > now() AND shard < ? RETURNING shard";
+
+    private static final String FIND_CLAIMABLE =
+        "SELECT s FROM generate_series(0, ? - 1) s WHERE NOT EXISTS (" +
+        "SELECT 1 FROM job_shard_leases l WHERE l.shard = s AND l.expires_at > now()) ORDER BY random()";
+
+    // Takes a shard that is free or whose owner stopped renewing it
+    private static final String CLAIM =
+        "INSERT INTO job_shard_leases (shard, owner_id, expires_at) " +
+        "VALUES (?, ?, now() + ? * interval '1 millisecond') " +
+        "ON CONFLICT (shard) DO UPDATE SET owner_id = EXCLUDED.owner_id, expires_at = EXCLUDED.expires_at " +
+        "WHERE job_shard_leases.expires_at <= now() RETURNING shard";
+
+    private static final String RELEASE =
+        "DELETE FROM job_shard_leases WHERE shard = ? AND owner_id = ?";
+
+    private static final String RELEASE_ALL =
+        "DELETE FROM job_shard_leases WHERE owner_id = ?";
+
+    // The share lock makes a takeover's CLAIM, or a RELEASE, wait until the calling transaction ends
+    private static final String HOLDS =
+        "SELECT shard FROM job_shard_leases WHERE shard = ? AND owner_id = ? AND expires_at > now() FOR SHARE";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void heartbeat(String nodeId) {
+        jdbcTemplate.update(HEARTBEAT, nodeId);
+    }
+
+    public int countLiveNodes(long ttlMillis) {
+        Integer count = jdbcTemplate.queryForObject(COUNT_LIVE_NODES, Integer.class, ttlMillis);
+        return count == null ? 0 : count;
+    }
+
+    public int deleteDeadNodes(long olderThanMillis) {
+        return jdbcTemplate.update(DELETE_DEAD_NODES, olderThanMillis);
+    }
+
+    public void deleteNode(String nodeId) {
+        jdbcTemplate.update(DELETE_NODE, nodeId);
+    }
+
+    // Extends every unexpired lease of the node and returns the shards it still holds
+    public List<Integer> extendOwnLeases(String nodeId, long ttlMillis, int shardCount) {
+        return jdbcTemplate.queryForList(EXTEND_OWN_LEASES, Integer.class, ttlMillis, nodeId, shardCount);
+    }
+
+    public List<Integer> findClaimable(int shardCount) {
+        return jdbcTemplate.queryForList(FIND_CLAIMABLE, Integer.class, shardCount);
+    }
+
+    public boolean claim(int shard, String nodeId, long ttlMillis) {
+        return !jdbcTemplate.queryForList(CLAIM, Integer.class, shard, nodeId, ttlMillis).isEmpty();
+    }
+
+    public void release(int shard, String nodeId) {
+        jdbcTemplate.update(RELEASE, shard, nodeId);
+    }
+
+    public void releaseAll(String nodeId) {
+        jdbcTemplate.update(RELEASE_ALL, nodeId);
+    }
+
+    // Locks the lease row until the surrounding transaction ends, so the answer holds until its commit
+    public boolean holds(int shard, String nodeId) {
+        return !jdbcTemplate.queryForList(HOLDS, Integer.class, shard, nodeId).isEmpty();
+    }
+}
@@ -0,0 +1,286 @@
+package com.smartsubscription.subscription.repository;
+
+import com.smartsubscription.data.id.UuidV7;
+import com.smartsubscription.subscription.entity.DueSubscription;
+import com.smartsubscription.subscription.entity.Subscription;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Plain JDBC access for the scheduled jobs and the subscribe path. Renewals are read
+ * in keyset pages and written with batch updates, expiries are set-based
+ * UPDATE ... RETURNING statements, and new subscriptions are conditional inserts, so
+ * nothing ends up in a persistence context.
+ */
+@Repository
+public class SubscriptionJdbcRepository {
+
+    private static final String SELECT_DUE_FOR_RENEWAL =
+        "SELECT id, user_id, billing_cycle, auto_renew, next_billing_date FROM subscriptions " +
+        "WHERE status = 'ACTIVE' AND next_billing_date < ? AND auto_renew = true ";
+
+    private static final String IN_PARTITION =
+        "AND (hashtext(%s) & 2147483647) %% ? = ? ";
+
+    private static final String IN_PARTITIONS =
+        "AND (hashtext(%s) & 2147483647) %% ? IN (%s) ";
+
+    private static final String SELECT_UPCOMING =
+        "SELECT id, user_id, billing_cycle, auto_renew, %1$s FROM subscriptions " +
+        "WHERE status = ? AND %1$s < ? ";
+
+    private static final String AFTER_CURSOR =
+        "AND (%1$s, id) > (?, ?) ";
+
+    private static final String ORDER_BY_DUE_KEY =
+        "ORDER BY %1$s, id LIMIT ?";
+
+    private static final String SELECT_DUE_BY_ID =
+        "SELECT id, user_id, billing_cycle, auto_renew, %1$s FROM subscriptions " +
+        "WHERE id = ? AND status = ? AND %1$s <= ?";
+
+    // Guarded by the billing date that was read, so a period is never renewed twice
+    private static final String RENEW =
+        "UPDATE subscriptions SET start_date = ?, end_date = ?, next_billing_date = ?, updated_at = ?, " +
+        "version = version + 1 " +
+        "WHERE id = ? AND status = 'ACTIVE' AND next_billing_date = ?";
+
+    // Trials always expire; active subscriptions only when auto-renew is off
+    private static final String EXPIRE_DUE =
+        "UPDATE subscriptions SET status = 'EXPIRED', updated_at = ?, version = version + 1 " +
+        "WHERE status = ? AND id IN (" +
+        "SELECT id FROM subscriptions WHERE status = ? AND %1$s < ? %2$s%3$s" +
+        "ORDER BY %1$s, id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+        "RETURNING id, user_id, billing_cycle, auto_renew, %1$s";
+
+    private static final String EXPIRE_BY_ID =
+        "UPDATE subscriptions SET status = 'EXPIRED', updated_at = ?, version = version + 1 " +
+        "WHERE id = ? AND status = ? AND %1$s <= ? %2$s" +
+        "RETURNING id, user_id, billing_cycle, auto_renew, %1$s";
+
+    // Statuses that still hold the plan; matches the predicate of idx_subscriptions_live_plan
+    private static final String LIVE_STATUS =
+        "status NOT IN ('CANCELLED', 'EXPIRED')";
+
+    // Rows conflicting with a live subscription of the same user and plan are skipped
+    private static final String INSERT_IF_NO_LIVE =
+        "INSERT INTO subscriptions (id, user_id, plan_id, plan_name, status, start_date, end_date, " +
+        "next_billing_date, trial_end_date, price, currency, billing_cycle, trial_days, auto_renew, " +
+        "created_at, updated_at, version) VALUES %s " +
+        "ON CONFLICT (user_id, plan_id) WHERE " + LIVE_STATUS + " DO NOTHING RETURNING id";
+
+    private static final String INSERT_ROW =
+        "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String NOT_AUTO_RENEW =
+        "AND auto_renew IS DISTINCT FROM true ";
+
+    private static final RowMapper<DueSubscription> DUE_ROW_MAPPER = (rs, rowNum) -> new DueSubscription(
+        rs.getString(1),
+        rs.getString(2),
+        rs.getString(3),
+        (Boolean) rs.getObject(4),
+        rs.getTimestamp(5).toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String partitionColumn;
+
+    public SubscriptionJdbcRepository(JdbcTemplate jdbcTemplate,
+                                      @Value("${subscription.jobs.partition-key:user_id}") String partitionKey) {
+        if (!"user_id".equals(partitionKey) && !"id".equals(partitionKey)) {
+            throw new IllegalArgumentException("subscription.jobs.partition-key must be user_id or id");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitionColumn = partitionKey;
+    }
+
+    /**
+     * Next page of auto-renewing subscriptions due before the cutoff, ordered by
+     * (next_billing_date, id). With more than one partition only rows whose partition
+     * key hashes to the given bucket are returned, so a subscription is always
+     * handled by the same worker.
+     */
+    public List<DueSubscription> findDueForRenewal(LocalDateTime cutoff, int partition, int partitions,
+                                                   DueSubscription after, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_DUE_FOR_RENEWAL);
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(cutoff));
+
+        if (partitions > 1) {
+            sql.append(String.format(IN_PARTITION, partitionColumn));
+            args.add(partitions);
+            args.add(partition);
+        }
+        if (after != null) {
+            sql.append(String.format(AFTER_CURSOR, DueScan.RENEWAL.getDueColumn()));
+            args.add(Timestamp.valueOf(after.getDueAt()));
+            args.add(after.getId());
+        }
+        sql.append(String.format(ORDER_BY_DUE_KEY, DueScan.RENEWAL.getDueColumn()));
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), DUE_ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * Expires up to limit due rows of the scan in a single statement and returns them.
+     * Rows locked by another worker are skipped, so callers repeat until fewer than
+     * limit rows come back.
+     */
+    public List<DueSubscription> expireDue(DueScan scan, LocalDateTime cutoff, int partition, int partitions,
+                                           int limit, LocalDateTime now) {
+        String partitionFilter = partitions > 1 ? String.format(IN_PARTITION, partitionColumn) : "";
+        String autoRenewFilter = scan == DueScan.RENEWAL ? NOT_AUTO_RENEW : "";
+        String sql = String.format(EXPIRE_DUE, scan.getDueColumn(), autoRenewFilter, partitionFilter);
+
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(now));
+        args.add(scan.getStatus());
+        args.add(scan.getStatus());
+        args.add(Timestamp.valueOf(cutoff));
+        if (partitions > 1) {
+            args.add(partitions);
+            args.add(partition);
+        }
+        args.add(limit);
+
+        return jdbcTemplate.query(sql, DUE_ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * Next page of rows of the scan falling due before the given time, ordered by
+     * (due date, id), restricted to the given partitions unless all are requested.
+     */
+    public List<DueSubscription> findUpcoming(DueScan scan, LocalDateTime before, Collection<Integer> partitionIds,
+                                              int partitions, DueSubscription after, int limit) {
+        StringBuilder sql = new StringBuilder(String.format(SELECT_UPCOMING, scan.getDueColumn()));
+        List<Object> args = new ArrayList<>();
+        args.add(scan.getStatus());
+        args.add(Timestamp.valueOf(before));
+
+        if (partitions > 1 && partitionIds.size() < partitions) {
+            sql.append(String.format(IN_PARTITIONS, partitionColumn,
+                String.join(", ", Collections.nCopies(partitionIds.size(), "?"))));
+            args.add(partitions);
+            args.addAll(partitionIds);
+        }
+
+        if (after != null) {
+            sql.append(String.format(AFTER_CURSOR, scan.getDueColumn()));
+            args.add(Timestamp.valueOf(after.getDueAt()));
+            args.add(after.getId());
+        }
+        sql.append(String.format(ORDER_BY_DUE_KEY, scan.getDueColumn()));
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), DUE_ROW_MAPPER, args.toArray());
+    }
+
+    // The subscription, if it is still in the scan's status and due by the cutoff
+    public Optional<DueSubscription> findDueById(DueScan scan, String id, LocalDateTime cutoff) {
+        return jdbcTemplate.query(String.format(SELECT_DUE_BY_ID, scan.getDueColumn()), DUE_ROW_MAPPER,
+            id, scan.getStatus(), Timestamp.valueOf(cutoff)).stream().findFirst();
+    }
+
+    // Expires a single due subscription; empty when it was no longer due or already moved on
+    public Optional<DueSubscription> expireById(DueScan scan, String id, LocalDateTime cutoff, LocalDateTime now) {
+        String autoRenewFilter = scan == DueScan.RENEWAL ? NOT_AUTO_RENEW : "";
+        return jdbcTemplate.query(String.format(EXPIRE_BY_ID, scan.getDueColumn(), autoRenewFilter), DUE_ROW_MAPPER,
+            Timestamp.valueOf(now), id, scan.getStatus(), Timestamp.valueOf(cutoff)).stream().findFirst();
+    }
+
+    // Moves the billing period forward for every row, skipping rows that left ACTIVE or were renewed meanwhile
+    public int renew(List<DueSubscription> subscriptions, LocalDateTime startDate,
+                     Function<DueSubscription, LocalDateTime> endDate) {
+        Timestamp start = Timestamp.valueOf(startDate);
+        int[][] counts = jdbcTemplate.batchUpdate(RENEW, subscriptions, subscriptions.size(), (ps, subscription) -> {
+            Timestamp end = Timestamp.valueOf(endDate.apply(subscription));
+            ps.setTimestamp(1, start);
+            ps.setTimestamp(2, end);
+            ps.setTimestamp(3, end);
+            ps.setTimestamp(4, start);
+            ps.setString(5, subscription.getId());
+            ps.setTimestamp(6, Timestamp.valueOf(subscription.getDueAt()));
+        });
+        return affected(counts);
+    }
+
+    /**
+     * Inserts the subscription in one statement unless the user already holds a live
+     * subscription to the same plan; the partial unique index decides, so concurrent
+     * requests cannot both succeed. Returns false when nothing was inserted.
+     */
+    public boolean insertIfNoLiveSubscription(Subscription subscription) {
+        return !insertIfNoLiveSubscriptions(Collections.singletonList(subscription)).isEmpty();
+    }
+
+    /**
+     * Multi-row form of {@link #insertIfNoLiveSubscription}: one statement for the whole
+     * list, returning the ids of the rows actually inserted. Assigns ids, timestamps and
+     * versions, which Hibernate would otherwise fill in. Callers keep the list small
+     * enough for the 65535 bind parameter limit (16 per row).
+     */
+    public Set<String> insertIfNoLiveSubscriptions(List<Subscription> subscriptions) {
+        if (subscriptions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp createdAt = Timestamp.valueOf(now);
+        List<Object> args = new ArrayList<>(subscriptions.size() * 16);
+        for (Subscription subscription : subscriptions) {
+            subscription.setId(UuidV7.generateString());
+            subscription.setCreatedAt(now);
+            subscription.setUpdatedAt(now);
+            subscription.setVersion(0L);
+
+            args.add(subscription.getId());
+            args.add(subscription.getUserId());
+            args.add(subscription.getPlanId());
+            args.add(subscription.getPlanName());
+            args.add(subscription.getStatus().name());
+            args.add(toTimestamp(subscription.getStartDate()));
+            args.add(toTimestamp(subscription.getEndDate()));
+            args.add(toTimestamp(subscription.getNextBillingDate()));
+            args.add(toTimestamp(subscription.getTrialEndDate()));
+            args.add(subscription.getPrice());
+            args.add(subscription.getCurrency());
+            args.add(subscription.getBillingCycle());
+            args.add(subscription.getTrialDays());
+            args.add(subscription.getAutoRenew());
+            args.add(createdAt);
+            args.add(createdAt);
+        }
+        String sql = String.format(INSERT_IF_NO_LIVE,
+            String.join(", ", Collections.nCopies(subscriptions.size(), INSERT_ROW)));
+        return new HashSet<>(jdbcTemplate.queryForList(sql, String.class, args.toArray()));
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+
+    private static int affected(int[][] counts) {
+        int total = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // SUCCESS_NO_INFO (-2) still means the row was written
+                total += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+            }
+        }
+        return total;
+    }
+}
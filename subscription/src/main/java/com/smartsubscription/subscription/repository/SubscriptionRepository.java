@@ -2,18 +2,50 @@ package com.smartsubscription.subscription.repository;
 
 import com.smartsubscription.subscription.entity.Subscription;
 import com.smartsubscription.subscription.entity.SubscriptionStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SubscriptionRepository extends JpaRepository<Subscription, String> {
     
+    // Read paths only ever serialize these rows, so they are loaded without dirty-checking snapshots
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Subscription> findByUserId(String userId);
     
+    // First keyset page over (created_at, id)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT s FROM Subscription s WHERE s.userId = :userId ORDER BY s.createdAt, s.id")
+    List<Subscription> findFirstPageByUserId(@Param("userId") String userId, Pageable page);
+    
+    // Keyset page strictly after the given (created_at, id)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT s FROM Subscription s WHERE s.userId = :userId " +
+           "AND (s.createdAt > :createdAt OR (s.createdAt = :createdAt AND s.id > :id)) " +
+           "ORDER BY s.createdAt, s.id")
+    List<Subscription> findPageByUserIdAfter(@Param("userId") String userId,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") String id,
+                                             Pageable page);
+    
+    // Server-side cursor; must be consumed and closed inside a transaction
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM Subscription s WHERE s.userId = :userId ORDER BY s.createdAt, s.id")
+    Stream<Subscription> streamByUserId(@Param("userId") String userId);
+    
     Optional<Subscription> findByIdAndUserId(String id, String userId);
     
     Optional<Subscription> findByUserIdAndStatus(String userId, SubscriptionStatus status);
@@ -0,0 +1,111 @@
+package com.smartsubscription.subscription.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keyed timer backed by a hierarchical timing wheel. Scheduling, rescheduling and
+ * cancelling are O(1); a single ticker thread only wakes up when a non-empty bucket
+ * expires, and hands every due payload to the expiry callback. The callback runs on
+ * the ticker thread and should dispatch real work elsewhere.
+ */
+@Slf4j
+public class HierarchicalTimer<T> implements AutoCloseable {
+
+    private final DelayQueue<TimerBucket<T>> queue = new DelayQueue<>();
+    private final Map<String, TimerTask<T>> tasksByKey = new HashMap<>();
+    private final TimingWheel<T> wheel;
+    private final Consumer<T> onExpire;
+    private final Thread ticker;
+    private volatile boolean running = true;
+
+    public HierarchicalTimer(String name, long tickMillis, int wheelSize, Consumer<T> onExpire) {
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis(), queue);
+        this.onExpire = onExpire;
+        this.ticker = new Thread(this::tick, name);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    // Schedules the payload under key, replacing whatever was scheduled for it before
+    public void schedule(String key, long dueAtMillis, T payload) {
+        TimerTask<T> task = new TimerTask<>(key, dueAtMillis, payload);
+        boolean due;
+        synchronized (this) {
+            removeLocked(key);
+            due = !wheel.add(task);
+            if (!due) {
+                tasksByKey.put(key, task);
+            }
+        }
+        if (due) {
+            onExpire.accept(payload);
+        }
+    }
+
+    public void cancel(String key) {
+        synchronized (this) {
+            removeLocked(key);
+        }
+    }
+
+    public synchronized int size() {
+        return tasksByKey.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        ticker.interrupt();
+    }
+
+    private void removeLocked(String key) {
+        TimerTask<T> previous = tasksByKey.remove(key);
+        if (previous != null && previous.getBucket() != null) {
+            previous.getBucket().remove(previous);
+        }
+    }
+
+    private void tick() {
+        while (running) {
+            try {
+                TimerBucket<T> bucket = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (bucket == null) {
+                    continue;
+                }
+
+                List<T> due = new ArrayList<>();
+                synchronized (this) {
+                    while (bucket != null) {
+                        wheel.advanceClock(bucket.getExpirationMillis());
+                        for (TimerTask<T> task : bucket.drain()) {
+                            // Cascade to a finer wheel, or fire when it is the task's turn
+                            if (!wheel.add(task) && tasksByKey.remove(task.getKey(), task)) {
+                                due.add(task.getPayload());
+                            }
+                        }
+                        bucket = queue.poll();
+                    }
+                }
+
+                for (T payload : due) {
+                    try {
+                        onExpire.accept(payload);
+                    } catch (RuntimeException e) {
+                        log.error("Timer callback failed for {}: {}", payload, e.getMessage(), e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.smartsubscription.subscription.scheduler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+// One slot of a timing wheel. Only buckets that hold tasks sit in the delay queue.
+class TimerBucket<T> implements Delayed {
+
+    private final Set<TimerTask<T>> tasks = new LinkedHashSet<>();
+    private volatile long expirationMillis = -1;
+
+    void add(TimerTask<T> task) {
+        tasks.add(task);
+        task.setBucket(this);
+    }
+
+    void remove(TimerTask<T> task) {
+        if (tasks.remove(task)) {
+            task.setBucket(null);
+        }
+    }
+
+    // Returns true when the bucket moved to a new round and has to be queued again
+    boolean setExpiration(long expirationMillis) {
+        if (this.expirationMillis == expirationMillis) {
+            return false;
+        }
+        this.expirationMillis = expirationMillis;
+        return true;
+    }
+
+    long getExpirationMillis() {
+        return expirationMillis;
+    }
+
+    // Empties the bucket and hands its tasks back for re-insertion or firing
+    List<TimerTask<T>> drain() {
+        List<TimerTask<T>> drained = new ArrayList<>(tasks);
+        drained.forEach(task -> task.setBucket(null));
+        tasks.clear();
+        expirationMillis = -1;
+        return drained;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(Math.max(expirationMillis - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(expirationMillis, ((TimerBucket<?>) other).expirationMillis);
+    }
+}
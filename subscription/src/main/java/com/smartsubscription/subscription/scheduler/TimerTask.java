@@ -0,0 +1,36 @@
+package com.smartsubscription.subscription.scheduler;
+
+// An entry in the timing wheel; owned and mutated by HierarchicalTimer under its lock
+class TimerTask<T> {
+
+    private final String key;
+    private final long dueAtMillis;
+    private final T payload;
+    private TimerBucket<T> bucket;
+
+    TimerTask(String key, long dueAtMillis, T payload) {
+        this.key = key;
+        this.dueAtMillis = dueAtMillis;
+        this.payload = payload;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    long getDueAtMillis() {
+        return dueAtMillis;
+    }
+
+    T getPayload() {
+        return payload;
+    }
+
+    TimerBucket<T> getBucket() {
+        return bucket;
+    }
+
+    void setBucket(TimerBucket<T> bucket) {
+        this.bucket = bucket;
+    }
+}
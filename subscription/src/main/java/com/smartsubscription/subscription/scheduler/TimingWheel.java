@@ -0,0 +1,62 @@
+package com.smartsubscription.subscription.scheduler;
+
+import java.util.concurrent.DelayQueue;
+
+/**
+ * One level of a hierarchical timing wheel. Each level covers wheelSize ticks; tasks
+ * further out go to an overflow wheel whose tick is this level's whole interval, and
+ * cascade down as the clock reaches their bucket.
+ */
+class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long intervalMillis;
+    private final TimerBucket<T>[] buckets;
+    private final DelayQueue<TimerBucket<T>> queue;
+    private long currentTimeMillis;
+    private TimingWheel<T> overflowWheel;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int wheelSize, long startMillis, DelayQueue<TimerBucket<T>> queue) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.intervalMillis = tickMillis * wheelSize;
+        this.queue = queue;
+        this.currentTimeMillis = startMillis - (startMillis % tickMillis);
+        this.buckets = new TimerBucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new TimerBucket<>();
+        }
+    }
+
+    // Returns false when the task is already due and should fire now
+    boolean add(TimerTask<T> task) {
+        long dueAt = task.getDueAtMillis();
+        if (dueAt < currentTimeMillis + tickMillis) {
+            return false;
+        }
+        if (dueAt < currentTimeMillis + intervalMillis) {
+            long virtualId = dueAt / tickMillis;
+            TimerBucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+            bucket.add(task);
+            if (bucket.setExpiration(virtualId * tickMillis)) {
+                queue.offer(bucket);
+            }
+            return true;
+        }
+        if (overflowWheel == null) {
+            overflowWheel = new TimingWheel<>(intervalMillis, wheelSize, currentTimeMillis, queue);
+        }
+        return overflowWheel.add(task);
+    }
+
+    void advanceClock(long timeMillis) {
+        if (timeMillis >= currentTimeMillis + tickMillis) {
+            currentTimeMillis = timeMillis - (timeMillis % tickMillis);
+            if (overflowWheel != null) {
+                overflowWheel.advanceClock(currentTimeMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.smartsubscription.subscription.service;
+
+import java.time.LocalDateTime;
+
+// Shared by SubscriptionService and the scheduled jobs
+public final class BillingPeriods {
+
+    private BillingPeriods() {
+    }
+
+    // End of the billing period that starts at startDate
+    public static LocalDateTime endDate(LocalDateTime startDate, String billingCycle) {
+        return switch (billingCycle.toUpperCase()) {
+            case "MONTHLY" -> startDate.plusMonths(1);
+            case "QUARTERLY" -> startDate.plusMonths(3);
+            case "YEARLY" -> startDate.plusYears(1);
+            case "WEEKLY" -> startDate.plusWeeks(1);
+            case "DAILY" -> startDate.plusDays(1);
+            default -> startDate.plusMonths(1);
+        };
+    }
+}
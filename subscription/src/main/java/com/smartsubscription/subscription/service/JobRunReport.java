@@ -0,0 +1,82 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.subscription.repository.DueScan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Progress of one run of a scheduled job, broken down by partition
+public class JobRunReport {
+
+    private final DueScan job;
+    private final String runId;
+    private final long startedAt = System.currentTimeMillis();
+    private final List<PartitionProgress> partitions;
+    private volatile long finishedAt;
+
+    public JobRunReport(DueScan job, String runId, Collection<Integer> partitionIds) {
+        this(job, runId, fresh(partitionIds));
+    }
+
+    public JobRunReport(DueScan job, String runId, List<PartitionProgress> partitions) {
+        this.job = job;
+        this.runId = runId;
+        this.partitions = Collections.unmodifiableList(new ArrayList<>(partitions));
+    }
+
+    private static List<PartitionProgress> fresh(Collection<Integer> partitionIds) {
+        List<PartitionProgress> progress = new ArrayList<>(partitionIds.size());
+        for (Integer partition : partitionIds) {
+            progress.add(new PartitionProgress(partition));
+        }
+        return progress;
+    }
+
+    void finish() {
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public DueScan getJob() {
+        return job;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public List<PartitionProgress> getPartitions() {
+        return partitions;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != 0;
+    }
+
+    public long getRenewed() {
+        return partitions.stream().mapToLong(PartitionProgress::getRenewed).sum();
+    }
+
+    public long getExpired() {
+        return partitions.stream().mapToLong(PartitionProgress::getExpired).sum();
+    }
+
+    public long getFailed() {
+        return partitions.stream().mapToLong(PartitionProgress::getFailed).sum();
+    }
+
+    public int getChunks() {
+        return partitions.stream().mapToInt(PartitionProgress::getChunks).sum();
+    }
+
+    public long getElapsedMillis() {
+        return (isFinished() ? finishedAt : System.currentTimeMillis()) - startedAt;
+    }
+
+    public double getRowsPerSecond() {
+        long processed = getRenewed() + getExpired() + getFailed();
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? processed : processed * 1000.0 / elapsed;
+    }
+}
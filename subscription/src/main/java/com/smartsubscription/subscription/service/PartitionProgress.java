@@ -0,0 +1,89 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.subscription.entity.DueSubscription;
+import com.smartsubscription.subscription.entity.RunPhase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Live counters for one partition of a job run; updated by the worker, read by anyone
+public class PartitionProgress {
+
+    private final int partition;
+    private final AtomicLong renewed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger chunks = new AtomicInteger();
+    private final DueSubscription resumeAfter;
+    private volatile RunPhase phase;
+    private volatile boolean done;
+
+    public PartitionProgress(int partition) {
+        this(partition, RunPhase.EXPIRING, null);
+    }
+
+    // Picks a partition up from a ledger checkpoint
+    public PartitionProgress(int partition, RunPhase phase, DueSubscription resumeAfter) {
+        this.partition = partition;
+        this.phase = phase;
+        this.resumeAfter = resumeAfter;
+    }
+
+    void chunkCommitted(int renewedRows, int expiredRows) {
+        chunks.incrementAndGet();
+        renewed.addAndGet(renewedRows);
+        expired.addAndGet(expiredRows);
+    }
+
+    void chunkFailed(int rows) {
+        chunks.incrementAndGet();
+        failed.addAndGet(rows);
+    }
+
+    void setPhase(RunPhase phase) {
+        this.phase = phase;
+    }
+
+    void markDone() {
+        done = true;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public RunPhase getPhase() {
+        return phase;
+    }
+
+    // Last renewal key handled before this partition was resumed, or null
+    public DueSubscription getResumeAfter() {
+        return resumeAfter;
+    }
+
+    public long getRenewed() {
+        return renewed.get();
+    }
+
+    public long getExpired() {
+        return expired.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getChunks() {
+        return chunks.get();
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        return "partition " + partition + ": " + getRenewed() + " renewed, " + getExpired() + " expired, "
+            + getFailed() + " failed in " + getChunks() + " chunks" + (done ? "" : " (running)");
+    }
+}
@@ -0,0 +1,135 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.data.routing.ReplicaRoutingDataSource;
+import com.smartsubscription.subscription.entity.SubscriptionPlan;
+import com.smartsubscription.subscription.event.PlanChangedEvent;
+import com.smartsubscription.subscription.repository.SubscriptionPlanRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory copy of the subscription_plans table. Readers get an immutable snapshot
+ * through a single volatile read: no query and no lock. Plan changes rebuild the
+ * snapshot from the database once their transaction has committed and swap it in
+ * whole, so a reader never sees half an update. A periodic refresh picks up changes
+ * made by other instances.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlanCatalog {
+
+    private static final Comparator<SubscriptionPlan> BY_SORT_ORDER = Comparator
+        .comparing((SubscriptionPlan plan) -> plan.getSortOrder() == null ? 0 : plan.getSortOrder())
+        .thenComparing(SubscriptionPlan::getCode);
+
+    private final SubscriptionPlanRepository planRepository;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    public List<SubscriptionPlan> getAll() {
+        return snapshot().all;
+    }
+
+    // Active plans ordered by sortOrder
+    public List<SubscriptionPlan> getActive() {
+        return snapshot().active;
+    }
+
+    public Optional<SubscriptionPlan> findById(String id) {
+        return Optional.ofNullable(snapshot().byId.get(id));
+    }
+
+    // Codes are matched case-insensitively
+    public Optional<SubscriptionPlan> findByCode(String code) {
+        return code == null ? Optional.empty() : Optional.ofNullable(snapshot().byCode.get(code.toUpperCase()));
+    }
+
+    public long getVersion() {
+        return snapshot().version;
+    }
+
+    // Read from the primary, a replica may not have the change yet
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanChanged(PlanChangedEvent event) {
+        ReplicaRoutingDataSource.onPrimary(this::refresh);
+    }
+
+    @Scheduled(fixedDelayString = "${subscription.catalog.refresh-interval-ms:60000}",
+        initialDelayString = "${subscription.catalog.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            load();
+        } catch (DataAccessException e) {
+            // Keep serving the last snapshot; the next refresh tries again
+            log.warn("Plan catalog refresh failed: {}", e.getMessage());
+        }
+    }
+
+    // Writers are serialized so an older read can never replace a newer snapshot
+    private synchronized Snapshot load() {
+        Snapshot current = snapshot.get();
+        Snapshot next = new Snapshot(current == null ? 1 : current.version + 1, planRepository.findAll());
+        snapshot.set(next);
+        log.debug("Plan catalog version {} loaded with {} plans", next.version, next.all.size());
+        return next;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot.get();
+        return current != null ? current : load();
+    }
+
+    private static SubscriptionPlan copy(SubscriptionPlan plan) {
+        return new SubscriptionPlan(plan.getId(), plan.getCode(), plan.getName(), plan.getDescription(),
+            plan.getPrice(), plan.getCurrency(), plan.getBillingCycle(), plan.getTrialDays(), plan.getIsActive(),
+            plan.getMaxUsers(), plan.getMaxProjects(), plan.getStorageLimit(), plan.getApiRateLimit(),
+            plan.getSortOrder(), plan.getCreatedAt());
+    }
+
+    // Immutable view of the plans at one point in time; plans are detached copies
+    private static final class Snapshot {
+
+        private final long version;
+        private final List<SubscriptionPlan> all;
+        private final List<SubscriptionPlan> active;
+        private final Map<String, SubscriptionPlan> byId;
+        private final Map<String, SubscriptionPlan> byCode;
+
+        private Snapshot(long version, List<SubscriptionPlan> plans) {
+            List<SubscriptionPlan> sorted = plans.stream()
+                .map(PlanCatalog::copy)
+                .sorted(BY_SORT_ORDER)
+                .collect(Collectors.toList());
+            Map<String, SubscriptionPlan> ids = new HashMap<>();
+            Map<String, SubscriptionPlan> codes = new HashMap<>();
+            List<SubscriptionPlan> activePlans = new ArrayList<>();
+            for (SubscriptionPlan plan : sorted) {
+                ids.put(plan.getId(), plan);
+                codes.put(plan.getCode().toUpperCase(), plan);
+                if (Boolean.TRUE.equals(plan.getIsActive())) {
+                    activePlans.add(plan);
+                }
+            }
+            this.version = version;
+            this.all = Collections.unmodifiableList(sorted);
+            this.active = Collections.unmodifiableList(activePlans);
+            this.byId = Collections.unmodifiableMap(ids);
+            this.byCode = Collections.unmodifiableMap(codes);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.data.routing.ReplicaRoutingDataSource;
+import com.smartsubscription.subscription.config.PlanCatalogTopicConfig;
+import com.smartsubscription.subscription.entity.SubscriptionPlan;
+import com.smartsubscription.subscription.event.PlanChangedEvent;
+import com.smartsubscription.subscription.repository.SubscriptionPlanRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Publishes committed plan changes to the compacted plan-catalog topic: the full plan
+ * keyed by its id, or a tombstone when it was deleted. The whole table is republished
+ * at startup and periodically, so a change whose send failed is repaired and the
+ * topic always converges on the table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlanCatalogPublisher {
+
+    private final SubscriptionPlanRepository planRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanChanged(PlanChangedEvent event) {
+        try {
+            // Read from the primary: a lagging replica would publish the plan as it was before the change
+            SubscriptionPlan plan = event.isDeleted() ? null : ReplicaRoutingDataSource.onPrimary(() ->
+                planRepository.findById(event.getPlanId()).orElse(null));
+            kafkaTemplate.send(PlanCatalogTopicConfig.PLAN_CATALOG_TOPIC, event.getPlanId(), plan);
+            log.debug("Published plan {} to the catalog topic{}", event.getPlanId(), plan == null ? " (deleted)" : "");
+        } catch (Exception e) {
+            // Repaired by the next full republish
+            log.error("Failed to publish plan {} to the catalog topic: {}", event.getPlanId(), e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${subscription.catalog.republish-interval-ms:3600000}",
+        initialDelayString = "${subscription.catalog.republish-interval-ms:3600000}")
+    public void republishAll() {
+        try {
+            List<SubscriptionPlan> plans = planRepository.findAll();
+            plans.forEach(plan -> kafkaTemplate.send(PlanCatalogTopicConfig.PLAN_CATALOG_TOPIC, plan.getId(), plan));
+            log.info("Republished {} plans to the catalog topic", plans.size());
+        } catch (Exception e) {
+            log.error("Failed to republish the plan catalog: {}", e.getMessage());
+        }
+    }
+}
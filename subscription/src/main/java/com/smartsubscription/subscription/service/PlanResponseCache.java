@@ -0,0 +1,138 @@
+package com.smartsubscription.subscription.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized plan responses, kept per catalog version. Each body is serialized once
+ * (and gzipped once when it is large enough) and then served as is, with a strong
+ * ETag derived from its content so it matches across instances. Requests carrying
+ * a matching If-None-Match get an empty 304.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanResponseCache {
+
+    private final PlanCatalog planCatalog;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicReference<Bodies> bodies = new AtomicReference<>(new Bodies(0));
+
+    @Value("${subscription.catalog.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+
+    /**
+     * Response for the given key. The value is only computed when the current catalog
+     * version has no body for the key yet; exceptions it throws (e.g. 404) propagate
+     * and nothing is cached.
+     */
+    public ResponseEntity<byte[]> respond(String key, Supplier<Object> value, String ifNoneMatch,
+                                          String acceptEncoding) {
+        Body body = bodiesFor(planCatalog.getVersion()).byKey.computeIfAbsent(key, k -> serialize(value.get()));
+
+        boolean gzip = body.gzipped != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? body.gzipEtag : body.etag;
+        if (ifNoneMatch != null && (ifNoneMatch.contains(body.etag) || ifNoneMatch.contains(body.gzipEtag)
+            || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache())
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? body.gzipped : body.identity);
+    }
+
+    // The version is read before the value, so a body is never older than the version it is filed under
+    private Bodies bodiesFor(long version) {
+        Bodies current = bodies.get();
+        while (current.version < version) {
+            bodies.compareAndSet(current, new Bodies(version));
+            current = bodies.get();
+        }
+        return current;
+    }
+
+    private Body serialize(Object value) {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(value);
+            String hash = hash(identity);
+            byte[] gzipped = identity.length >= gzipMinBytes ? gzip(identity) : null;
+            return new Body(identity, gzipped, '"' + hash + '"', '"' + hash + "-gzip\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize plan response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Bodies {
+
+        private final long version;
+        private final Map<String, Body> byKey = new ConcurrentHashMap<>();
+
+        private Bodies(long version) {
+            this.version = version;
+        }
+    }
+
+    private static final class Body {
+
+        private final byte[] identity;
+        private final byte[] gzipped;
+        private final String etag;
+        private final String gzipEtag;
+
+        private Body(byte[] identity, byte[] gzipped, String etag, String gzipEtag) {
+            this.identity = identity;
+            this.gzipped = gzipped;
+            this.etag = etag;
+            this.gzipEtag = gzipEtag;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.smartsubscription.subscription.service;
 
 import com.smartsubscription.subscription.entity.SubscriptionPlan;
+import com.smartsubscription.subscription.event.PlanChangedEvent;
 import com.smartsubscription.subscription.repository.SubscriptionPlanRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,20 +18,22 @@ import java.util.UUID;
 public class PlanService {
     
     private final SubscriptionPlanRepository planRepository;
+    private final PlanCatalog planCatalog;
+    private final ApplicationEventPublisher eventPublisher;
     
     // Get all plans
     public List<SubscriptionPlan> getAllPlans() {
-        return planRepository.findAll();
+        return planCatalog.getAll();
     }
     
     // Get active plans only
     public List<SubscriptionPlan> getActivePlans() {
-        return planRepository.findByIsActiveTrueOrderBySortOrderAsc();
+        return planCatalog.getActive();
     }
     
     // Get plan by ID
     public SubscriptionPlan getPlanById(String id) {
-        return planRepository.findById(id)
+        return planCatalog.findById(id)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
                 "Plan not found with ID: " + id));
     }
@@ -81,14 +85,16 @@ public class PlanService {
         // Ensure code is uppercase for consistency
         plan.setCode(plan.getCode().toUpperCase());
         
-        return planRepository.save(plan);
+        SubscriptionPlan saved = planRepository.save(plan);
+        eventPublisher.publishEvent(new PlanChangedEvent(saved.getId(), false));
+        return saved;
     }
     
     // Update plan
     @Transactional
     public SubscriptionPlan updatePlan(SubscriptionPlan updatedPlan) {
-        // Check if plan exists
-        SubscriptionPlan existingPlan = getPlanById(updatedPlan.getId());
+        // Check if plan exists; catalog plans are read-only copies
+        SubscriptionPlan existingPlan = findManagedPlan(updatedPlan.getId());
         
         // Update fields
         if (updatedPlan.getCode() != null) {
@@ -153,7 +159,9 @@ public class PlanService {
             existingPlan.setSortOrder(updatedPlan.getSortOrder());
         }
         
-        return planRepository.save(existingPlan);
+        SubscriptionPlan saved = planRepository.save(existingPlan);
+        eventPublisher.publishEvent(new PlanChangedEvent(saved.getId(), false));
+        return saved;
     }
     
     // Delete plan
@@ -169,13 +177,22 @@ public class PlanService {
         // You might want to add this check when you have subscription table
         
         planRepository.deleteById(planId);
+        eventPublisher.publishEvent(new PlanChangedEvent(planId, true));
     }
     
     // Toggle plan active status
     @Transactional
     public SubscriptionPlan togglePlanActive(String planId) {
-        SubscriptionPlan plan = getPlanById(planId);
+        SubscriptionPlan plan = findManagedPlan(planId);
         plan.setIsActive(!plan.getIsActive());
-        return planRepository.save(plan);
+        SubscriptionPlan saved = planRepository.save(plan);
+        eventPublisher.publishEvent(new PlanChangedEvent(saved.getId(), false));
+        return saved;
+    }
+    
+    private SubscriptionPlan findManagedPlan(String id) {
+        return planRepository.findById(id)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
+                "Plan not found with ID: " + id));
     }
 }
\ No newline at end of file
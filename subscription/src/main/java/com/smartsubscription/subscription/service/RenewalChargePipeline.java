@@ -0,0 +1,280 @@
+package com.smartsubscription.subscription.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.subscription.entity.RenewalCharge;
+import com.smartsubscription.subscription.entity.RenewalChargeResult;
+import com.smartsubscription.subscription.repository.RenewalChargeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends renewal charges to the Payment service and applies what comes back.
+ * <p>
+ * Charges go out on the renewal-charges topic with at most
+ * subscription.billing.max-in-flight unanswered at a time; callers wait once the
+ * limit is reached, which slows the renewal job down to the rate Payment (and its
+ * provider) can sustain. Results arrive in batches on renewal-charge-results and are
+ * applied in one transaction per batch. Charges whose result never arrives, or that
+ * were never sent, stay PENDING and are sent again by {@link #resubmitStale()};
+ * Payment deduplicates by charge id, so a resend never charges twice. A charge sent
+ * subscription.billing.max-attempts times without an answer is failed like a declined
+ * one. {@link #retryPastDue()} charges past-due subscriptions again a while later.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RenewalChargePipeline {
+
+    private static final String REQUESTS_TOPIC = "renewal-charges";
+    private static final String RESULTS_TOPIC = "renewal-charge-results";
+    private static final String NO_RESULT = "No result from Payment";
+
+    private final RenewalChargeRepository renewalChargeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final SubscriptionReadCache subscriptionReadCache;
+
+    // Charge id -> time it was sent, for charges holding a permit
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${subscription.billing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${subscription.billing.result-timeout-ms:300000}")
+    private long resultTimeoutMillis;
+
+    @Value("${subscription.billing.resubmit-batch-size:500}")
+    private int resubmitBatchSize;
+
+    @Value("${subscription.billing.permit-wait-ms:60000}")
+    private long permitWaitMillis;
+
+    @Value("${subscription.billing.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${subscription.billing.past-due.retry-after-ms:86400000}")
+    private long retryAfterMillis;
+
+    @Value("${subscription.billing.past-due.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${subscription.billing.past-due.batch-size:500}")
+    private int retryBatchSize;
+
+    private Semaphore permits;
+
+    @Value("${subscription.billing.max-in-flight:200}")
+    void setMaxInFlight(int maxInFlight) {
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    // Without billing, renewals only move the billing dates forward
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sends the charges, waiting while the in-flight limit is reached but for no more
+     * than subscription.billing.permit-wait-ms in all; charges not sent by then stay
+     * PENDING for the resubmit sweep. Call after the transaction that created them has
+     * committed.
+     */
+    public void submit(List<RenewalCharge> charges) {
+        // Kept well inside the result timeout, so the sweep never resends a charge still waiting here
+        long waitMillis = Math.min(permitWaitMillis, resultTimeoutMillis / 2);
+        int sent = dispatch(charges, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        if (sent < charges.size()) {
+            log.warn("In-flight limit still reached after {} ms, {} of {} renewal charges left for the resubmit sweep",
+                waitMillis, charges.size() - sent, charges.size());
+        }
+    }
+
+    @KafkaListener(topics = RESULTS_TOPIC, groupId = "subscription-billing", batch = "true")
+    public void onResults(List<String> messages) {
+        List<RenewalChargeResult> results = new ArrayList<>(messages.size());
+        List<String> userIds = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            try {
+                Map<?, ?> payload = objectMapper.readValue(message, Map.class);
+                results.add(new RenewalChargeResult(
+                    (String) payload.get("chargeId"),
+                    Boolean.TRUE.equals(payload.get("succeeded")),
+                    (String) payload.get("transactionId"),
+                    (String) payload.get("error")));
+                if (payload.get("userId") != null) {
+                    userIds.add((String) payload.get("userId"));
+                }
+            } catch (IOException | ClassCastException e) {
+                log.error("Skipping unreadable renewal charge result: {}", message, e);
+            }
+        }
+        if (results.isEmpty()) {
+            return;
+        }
+
+        // A failure here is rethrown so the whole batch is redelivered
+        int[] moved = transactionTemplate.execute(status -> renewalChargeRepository.applyResults(results));
+        results.forEach(result -> release(result.getChargeId()));
+        subscriptionReadCache.invalidate(userIds);
+        log.info("Applied {} renewal charge results: {} subscriptions past due, {} reactivated",
+            results.size(), moved[0], moved[1]);
+    }
+
+    /**
+     * Frees permits of charges that never got an answer, fails those already sent
+     * max-attempts times and sends the others again, without waiting.
+     */
+    @Scheduled(fixedDelayString = "${subscription.billing.resubmit-interval-ms:60000}",
+        initialDelayString = "${subscription.billing.resubmit-interval-ms:60000}")
+    public void resubmitStale() {
+        if (!enabled) {
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - resultTimeoutMillis;
+        inFlight.forEach((chargeId, sentAt) -> {
+            if (sentAt < expiredBefore) {
+                release(chargeId);
+            }
+        });
+
+        failExhausted();
+
+        // Claims no more than can be sent right now; the rest wait for a later sweep
+        int capacity = Math.min(resubmitBatchSize, permits.availablePermits());
+        if (capacity == 0) {
+            log.warn("In-flight limit reached, skipping the renewal charge resubmit sweep");
+            return;
+        }
+        List<RenewalCharge> stale = renewalChargeRepository.claimStale(resultTimeoutMillis, maxAttempts, capacity);
+        if (!stale.isEmpty()) {
+            log.warn("Resubmitting {} renewal charges without a result", stale.size());
+            int sent = dispatch(stale, System.nanoTime());
+            if (sent < stale.size()) {
+                log.warn("{} renewal charges not resubmitted, in-flight limit reached", stale.size() - sent);
+            }
+        }
+    }
+
+    // Charges past due subscriptions again for the period they owe, once retry-after-ms has passed since the failure
+    @Scheduled(fixedDelayString = "${subscription.billing.resubmit-interval-ms:60000}",
+        initialDelayString = "${subscription.billing.resubmit-interval-ms:60000}")
+    public void retryPastDue() {
+        if (!enabled || maxRetries <= 0) {
+            return;
+        }
+        int capacity = Math.min(retryBatchSize, permits.availablePermits());
+        if (capacity == 0) {
+            return;
+        }
+        List<RenewalCharge> retries = transactionTemplate.execute(status ->
+            renewalChargeRepository.createRetries(retryAfterMillis, maxRetries, capacity, NO_RESULT));
+        if (!retries.isEmpty()) {
+            log.info("Retrying {} renewal charges of past due subscriptions", retries.size());
+            // Whatever is not sent now is picked up by the resubmit sweep
+            dispatch(retries, System.nanoTime());
+        }
+    }
+
+    // Fails what is still pending after max-attempts sends, moving the subscriptions as a declined charge would
+    private void failExhausted() {
+        List<RenewalCharge> exhausted = transactionTemplate.execute(status -> {
+            List<RenewalCharge> charges =
+                renewalChargeRepository.claimExhausted(resultTimeoutMillis, maxAttempts, resubmitBatchSize);
+            List<RenewalChargeResult> results = new ArrayList<>(charges.size());
+            for (RenewalCharge charge : charges) {
+                results.add(new RenewalChargeResult(charge.getId(), false, null, NO_RESULT));
+            }
+            if (!results.isEmpty()) {
+                renewalChargeRepository.applyResults(results);
+            }
+            return charges;
+        });
+        if (exhausted.isEmpty()) {
+            return;
+        }
+        List<String> userIds = new ArrayList<>(exhausted.size());
+        for (RenewalCharge charge : exhausted) {
+            release(charge.getId());
+            userIds.add(charge.getUserId());
+        }
+        subscriptionReadCache.invalidate(userIds);
+        log.warn("Failed {} renewal charges left without a result after {} attempts", exhausted.size(), maxAttempts);
+    }
+
+    /**
+     * Sends charges in order until a permit is not available by the deadline, and
+     * returns how many were handled. A charge already in flight is neither sent again
+     * nor given a second permit.
+     */
+    private int dispatch(List<RenewalCharge> charges, long deadlineNanos) {
+        int handled = 0;
+        for (RenewalCharge charge : charges) {
+            if (inFlight.containsKey(charge.getId())) {
+                handled++;
+                continue;
+            }
+            try {
+                long waitNanos = Math.max(0, deadlineNanos - System.nanoTime());
+                if (!permits.tryAcquire(waitNanos, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (inFlight.putIfAbsent(charge.getId(), System.currentTimeMillis()) != null) {
+                // Sent by another caller meanwhile
+                permits.release();
+            } else {
+                send(charge);
+            }
+            handled++;
+        }
+        return handled;
+    }
+
+    private void send(RenewalCharge charge) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("chargeId", charge.getId());
+        request.put("subscriptionId", charge.getSubscriptionId());
+        request.put("userId", charge.getUserId());
+        request.put("amount", charge.getAmount());
+        request.put("currency", charge.getCurrency());
+        request.put("attempt", charge.getAttempts());
+        request.put("timestamp", System.currentTimeMillis());
+
+        try {
+            kafkaTemplate.send(REQUESTS_TOPIC, charge.getUserId(), request).whenComplete((sent, e) -> {
+                if (e != null) {
+                    log.error("Failed to send renewal charge {}: {}", charge.getId(), e.getMessage());
+                    release(charge.getId());
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to send renewal charge {}: {}", charge.getId(), e.getMessage());
+            release(charge.getId());
+        }
+    }
+
+    private void release(String chargeId) {
+        if (inFlight.remove(chargeId) != null) {
+            permits.release();
+        }
+    }
+}
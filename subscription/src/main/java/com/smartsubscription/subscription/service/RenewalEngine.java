@@ -0,0 +1,306 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.subscription.config.RenewalWorkerPool;
+import com.smartsubscription.subscription.entity.DueSubscription;
+import com.smartsubscription.subscription.entity.RenewalCharge;
+import com.smartsubscription.subscription.entity.RunCheckpoint;
+import com.smartsubscription.subscription.entity.RunPhase;
+import com.smartsubscription.subscription.event.ShardsAcquiredEvent;
+import com.smartsubscription.subscription.event.SubscriptionsExpiredEvent;
+import com.smartsubscription.subscription.exception.ShardLeaseLostException;
+import com.smartsubscription.subscription.repository.DueScan;
+import com.smartsubscription.subscription.repository.RenewalChargeRepository;
+import com.smartsubscription.subscription.repository.RenewalRunRepository;
+import com.smartsubscription.subscription.repository.SubscriptionJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the renewal and trial-ending jobs. The due set is split into
+ * subscription.jobs.partitions buckets by hash of the partition key. Each instance
+ * only runs the buckets whose shard lease it holds (see ShardCoordinator), and each
+ * bucket is handled by a single worker, so a subscription is never touched twice.
+ * <p>
+ * Expiries (trials, and active subscriptions without auto-renew) are set-based
+ * UPDATE ... RETURNING statements in bounded batches. Auto-renewals are walked in
+ * keyset pages on (next_billing_date, id), each page committed in its own transaction.
+ * With billing enabled the same transaction creates the renewal charges, which are
+ * then handed to RenewalChargePipeline.
+ * <p>
+ * Every run is recorded in the run ledger (RenewalRunRepository). Each chunk writes
+ * its partition checkpoint in the same transaction, so a run cut short by a restart,
+ * a lost shard or a failed expiry batch is resumed from the last committed chunk,
+ * with its original cutoff.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RenewalEngine {
+
+    private final SubscriptionJdbcRepository subscriptionJdbcRepository;
+    private final RenewalRunRepository renewalRunRepository;
+    private final RenewalChargeRepository renewalChargeRepository;
+    private final RenewalChargePipeline chargePipeline;
+    private final TransactionTemplate transactionTemplate;
+    private final RenewalWorkerPool workerPool;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardCoordinator shardCoordinator;
+    private final TaskScheduler taskScheduler;
+
+    private static final String EXPIRE = "EXPIRE";
+    private static final String RENEW = "RENEW";
+    private static final String COMMITTED = "COMMITTED";
+    private static final String FAILED = "FAILED";
+
+    private final Map<DueScan, JobRunReport> latestReports = new ConcurrentHashMap<>();
+
+    @Value("${subscription.renewal.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${subscription.jobs.bulk-batch-size:1000}")
+    private int bulkBatchSize;
+
+    @Value("${subscription.jobs.partitions:1}")
+    private int partitions;
+
+    public JobRunReport runRenewals(LocalDateTime cutoff) {
+        return run(DueScan.RENEWAL, cutoff);
+    }
+
+    public JobRunReport runTrialEndings(LocalDateTime cutoff) {
+        return run(DueScan.TRIAL_ENDING, cutoff);
+    }
+
+    // Report of the running or most recently finished run of a job
+    public JobRunReport getLatestReport(DueScan job) {
+        return latestReports.get(job);
+    }
+
+    // Without a cluster no shard is ever acquired, so pick up interrupted runs at startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        if (!shardCoordinator.isEnabled()) {
+            Set<Integer> shards = shardCoordinator.getOwnedShards();
+            taskScheduler.schedule(() -> resume(shards), Instant.now());
+        }
+    }
+
+    // Finishes runs interrupted on shards taken over from another instance, or from before a restart
+    @EventListener
+    public void onShardsAcquired(ShardsAcquiredEvent event) {
+        taskScheduler.schedule(() -> resume(event.getShards()), Instant.now());
+    }
+
+    private JobRunReport run(DueScan job, LocalDateTime cutoff) {
+        Set<Integer> shards = shardCoordinator.getOwnedShards();
+        String runId = UUID.randomUUID().toString();
+        JobRunReport report = new JobRunReport(job, runId, shards);
+        latestReports.put(job, report);
+        if (shards.isEmpty()) {
+            log.info("{} skipped: this instance holds no shards", job);
+            report.finish();
+            return report;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            renewalRunRepository.supersede(job, shards);
+            renewalRunRepository.createRun(runId, job, shardCoordinator.getNodeId(), cutoff, shards);
+        });
+        log.info("{} run {} started with cutoff {}", job, runId, cutoff);
+        return execute(report, cutoff);
+    }
+
+    private void resume(Collection<Integer> shards) {
+        Map<String, List<RunCheckpoint>> byRun;
+        try {
+            byRun = renewalRunRepository.findResumable(shards).stream()
+                .collect(Collectors.groupingBy(RunCheckpoint::getRunId, LinkedHashMap::new, Collectors.toList()));
+        } catch (DataAccessException e) {
+            log.error("Could not read the run ledger for shards {}: {}", shards, e.getMessage());
+            return;
+        }
+
+        byRun.forEach((runId, checkpoints) -> {
+            RunCheckpoint first = checkpoints.get(0);
+            List<PartitionProgress> progress = checkpoints.stream()
+                .map(checkpoint -> new PartitionProgress(checkpoint.getPartition(), checkpoint.getPhase(),
+                    checkpoint.getHighWaterId() == null ? null : new DueSubscription(checkpoint.getHighWaterId(),
+                        null, null, null, checkpoint.getHighWaterDueAt())))
+                .collect(Collectors.toList());
+            JobRunReport report = new JobRunReport(first.getJob(), runId, progress);
+            latestReports.put(first.getJob(), report);
+            log.info("{} run {} resumed on partitions {}", first.getJob(), runId,
+                progress.stream().map(PartitionProgress::getPartition).collect(Collectors.toList()));
+            execute(report, first.getCutoff());
+        });
+    }
+
+    private JobRunReport execute(JobRunReport report, LocalDateTime cutoff) {
+        DueScan job = report.getJob();
+        List<CompletableFuture<Void>> workers = new ArrayList<>(report.getPartitions().size());
+        for (PartitionProgress progress : report.getPartitions()) {
+            workers.add(workerPool.submit(() -> runPartition(report, cutoff, progress)));
+        }
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+        report.finish();
+
+        boolean completed = false;
+        try {
+            completed = renewalRunRepository.completeRunIfDone(report.getRunId());
+        } catch (DataAccessException e) {
+            log.error("{} run {}: could not close the run: {}", job, report.getRunId(), e.getMessage());
+        }
+
+        if (partitions > 1) {
+            report.getPartitions().forEach(progress -> log.info("{} {}", job, progress));
+        }
+        log.info("{} run {} {}: {} renewed, {} expired, {} failed in {} chunks across {} partitions ({} rows/s)",
+            job, report.getRunId(), completed ? "finished" : "stopped with open partitions",
+            report.getRenewed(), report.getExpired(), report.getFailed(), report.getChunks(),
+            report.getPartitions().size(), String.format("%.1f", report.getRowsPerSecond()));
+        return report;
+    }
+
+    private void runPartition(JobRunReport report, LocalDateTime cutoff, PartitionProgress progress) {
+        DueScan job = report.getJob();
+        try {
+            if (progress.getPhase() == RunPhase.EXPIRING) {
+                if (!expireInBatches(report, cutoff, progress)) {
+                    // Left EXPIRING in the ledger, so resuming the run retries the expiry
+                    log.warn("{} partition {} stopped with expiry unfinished", job, progress.getPartition());
+                    return;
+                }
+                advance(report, progress, job == DueScan.RENEWAL ? RunPhase.RENEWING : RunPhase.DONE);
+            }
+            if (progress.getPhase() == RunPhase.RENEWING) {
+                renewInChunks(report, cutoff, progress);
+                advance(report, progress, RunPhase.DONE);
+            }
+        } catch (ShardLeaseLostException e) {
+            log.warn("{} partition {} stopped: {}", job, progress.getPartition(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("{} partition {} aborted: {}", job, progress.getPartition(), e.getMessage(), e);
+        } finally {
+            progress.markDone();
+        }
+    }
+
+    private void advance(JobRunReport report, PartitionProgress progress, RunPhase phase) {
+        renewalRunRepository.updatePhase(report.getRunId(), progress.getPartition(), phase);
+        progress.setPhase(phase);
+    }
+
+    // False when a batch failed; the partition has then not been expired through the cutoff
+    private boolean expireInBatches(JobRunReport report, LocalDateTime cutoff, PartitionProgress progress) {
+        DueScan job = report.getJob();
+        List<DueSubscription> expired;
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                expired = transactionTemplate.execute(status -> {
+                    shardCoordinator.assertHolds(progress.getPartition());
+                    List<DueSubscription> rows = subscriptionJdbcRepository.expireDue(
+                        job, cutoff, progress.getPartition(), partitions, bulkBatchSize, now);
+                    if (!rows.isEmpty()) {
+                        renewalRunRepository.recordChunk(report.getRunId(), progress.getPartition(), EXPIRE, COMMITTED,
+                            rows.get(0).getId(), rows.get(rows.size() - 1).getId(), rows.size(),
+                            0, rows.size(), 0, null, null);
+                    }
+                    return rows;
+                });
+            } catch (DataAccessException e) {
+                progress.chunkFailed(0);
+                log.error("{} partition {}: bulk expiry failed: {}", job, progress.getPartition(), e.getMessage());
+                recordFailedChunk(report, progress, EXPIRE, null, 0);
+                return false;
+            }
+
+            progress.chunkCommitted(0, expired.size());
+            if (!expired.isEmpty()) {
+                eventPublisher.publishEvent(new SubscriptionsExpiredEvent(job, expired));
+            }
+        } while (expired.size() == bulkBatchSize);
+        return true;
+    }
+
+    private void renewInChunks(JobRunReport report, LocalDateTime cutoff, PartitionProgress progress) {
+        DueSubscription cursor = progress.getResumeAfter();
+        List<DueSubscription> page;
+        do {
+            page = subscriptionJdbcRepository.findDueForRenewal(cutoff, progress.getPartition(), partitions,
+                cursor, chunkSize);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            try {
+                progress.chunkCommitted(commitRenewals(report.getRunId(), progress.getPartition(), page), 0);
+            } catch (DataAccessException e) {
+                progress.chunkFailed(page.size());
+                log.error("RENEWAL partition {}: failed to commit chunk starting at subscription {}: {}",
+                    progress.getPartition(), page.get(0).getId(), e.getMessage());
+                // Moves the checkpoint past the chunk; the next nightly run retries its rows
+                recordFailedChunk(report, progress, RENEW, page, page.size());
+            }
+
+            cursor = page.get(page.size() - 1);
+        } while (page.size() == chunkSize);
+    }
+
+    // One transaction per chunk, checkpoint and charges included; returns the number of renewed rows
+    private int commitRenewals(String runId, int partition, List<DueSubscription> chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        DueSubscription last = chunk.get(chunk.size() - 1);
+        List<RenewalCharge> charges = new ArrayList<>();
+        Integer renewed = transactionTemplate.execute(status -> {
+            shardCoordinator.assertHolds(partition);
+            int rows = subscriptionJdbcRepository.renew(chunk, now,
+                subscription -> BillingPeriods.endDate(now, subscription.getBillingCycle()));
+            if (chargePipeline.isEnabled()) {
+                charges.addAll(renewalChargeRepository.createForRenewed(
+                    chunk.stream().map(DueSubscription::getId).collect(Collectors.toList()), now));
+            }
+            renewalRunRepository.recordChunk(runId, partition, RENEW, COMMITTED, chunk.get(0).getId(), last.getId(),
+                chunk.size(), rows, 0, 0, last.getDueAt(), last.getId());
+            return rows;
+        });
+        // Blocks while too many charges are unanswered, pacing the job to the payment side
+        chargePipeline.submit(charges);
+        return renewed;
+    }
+
+    private void recordFailedChunk(JobRunReport report, PartitionProgress progress, String kind,
+                                   List<DueSubscription> chunk, int failed) {
+        DueSubscription first = chunk == null ? null : chunk.get(0);
+        DueSubscription last = chunk == null ? null : chunk.get(chunk.size() - 1);
+        try {
+            renewalRunRepository.recordChunk(report.getRunId(), progress.getPartition(), kind, FAILED,
+                first == null ? null : first.getId(), last == null ? null : last.getId(), failed,
+                0, 0, failed, last == null ? null : last.getDueAt(), last == null ? null : last.getId());
+        } catch (DataAccessException e) {
+            log.error("{} partition {}: could not record failed chunk: {}", report.getJob(), progress.getPartition(),
+                e.getMessage());
+        }
+    }
+}
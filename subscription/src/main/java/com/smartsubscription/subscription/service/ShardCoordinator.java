@@ -0,0 +1,170 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.subscription.event.ShardsAcquiredEvent;
+import com.smartsubscription.subscription.exception.ShardLeaseLostException;
+import com.smartsubscription.subscription.repository.ShardLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Splits the scheduled-job partitions (shards) across live subscription instances
+ * using lease rows in Postgres. Every instance heartbeats, keeps its leases alive,
+ * releases shards above its fair share so newcomers get work, and claims shards
+ * whose owner stopped renewing them. Job transactions call {@link #assertHolds}, so
+ * an instance that lost a lease stops writing to that shard, and one that still holds
+ * it keeps it until the transaction commits: the check locks the lease row, and a
+ * takeover waits on that lock.
+ */
+@Service
+@Slf4j
+public class ShardCoordinator implements DisposableBean {
+
+    private final ShardLeaseRepository shardLeaseRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int shardCount;
+    private final long leaseTtlMillis;
+    private final String nodeId;
+
+    private volatile Set<Integer> ownedShards = Collections.emptySet();
+
+    public ShardCoordinator(ShardLeaseRepository shardLeaseRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${subscription.cluster.enabled:true}") boolean enabled,
+                            @Value("${subscription.jobs.partitions:1}") int shardCount,
+                            @Value("${subscription.cluster.lease-ttl-ms:30000}") long leaseTtlMillis,
+                            @Value("${subscription.cluster.node-id:}") String nodeId) {
+        this.shardLeaseRepository = shardLeaseRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.shardCount = shardCount;
+        this.leaseTtlMillis = leaseTtlMillis;
+        this.nodeId = nodeId.isEmpty() ? defaultNodeId() : nodeId;
+        if (!enabled) {
+            // Single instance: this node runs every shard
+            this.ownedShards = IntStream.range(0, shardCount).boxed().collect(Collectors.toUnmodifiableSet());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // Shards this instance believed it held at the last heartbeat
+    public Set<Integer> getOwnedShards() {
+        return ownedShards;
+    }
+
+    // Checks and locks the lease in the database; call inside the transaction that writes the shard
+    public void assertHolds(int shard) {
+        if (enabled && !shardLeaseRepository.holds(shard, nodeId)) {
+            throw new ShardLeaseLostException(shard);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        if (enabled) {
+            log.info("Joining job cluster as {} ({} shards)", nodeId, shardCount);
+            heartbeat();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${subscription.cluster.heartbeat-ms:10000}",
+        initialDelayString = "${subscription.cluster.heartbeat-ms:10000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            shardLeaseRepository.heartbeat(nodeId);
+            shardLeaseRepository.deleteDeadNodes(leaseTtlMillis * 10);
+            int liveNodes = Math.max(shardLeaseRepository.countLiveNodes(leaseTtlMillis), 1);
+            int fairShare = (shardCount + liveNodes - 1) / liveNodes;
+
+            TreeSet<Integer> owned = new TreeSet<>(shardLeaseRepository.extendOwnLeases(nodeId, leaseTtlMillis, shardCount));
+
+            // Hand back shards above our share so new instances pick them up
+            while (owned.size() > fairShare) {
+                Integer shard = owned.last();
+                shardLeaseRepository.release(shard, nodeId);
+                owned.remove(shard);
+                log.info("Released shard {} to rebalance across {} instances", shard, liveNodes);
+            }
+
+            if (owned.size() < fairShare) {
+                List<Integer> claimable = shardLeaseRepository.findClaimable(shardCount);
+                for (Integer shard : claimable) {
+                    if (owned.size() >= fairShare) {
+                        break;
+                    }
+                    if (shardLeaseRepository.claim(shard, nodeId, leaseTtlMillis)) {
+                        owned.add(shard);
+                    }
+                }
+            }
+
+            // Includes leases still held from before a restart under the same node id
+            Set<Integer> acquired = new TreeSet<>(owned);
+            acquired.removeAll(ownedShards);
+            ownedShards = Collections.unmodifiableSet(owned);
+            if (!acquired.isEmpty()) {
+                log.info("Acquired shards {}; now holding {} of {} ({} live instances)",
+                    acquired, owned.size(), shardCount, liveNodes);
+                eventPublisher.publishEvent(new ShardsAcquiredEvent(Collections.unmodifiableSet(acquired)));
+            }
+        } catch (DataAccessException e) {
+            // Leases lapse on their own if the database stays unreachable
+            log.error("Shard heartbeat failed for {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            shardLeaseRepository.releaseAll(nodeId);
+            shardLeaseRepository.deleteNode(nodeId);
+            log.info("Released all shard leases held by {}", nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Could not release shard leases for {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "subscription";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
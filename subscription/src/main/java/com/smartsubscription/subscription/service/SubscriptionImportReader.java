@@ -0,0 +1,164 @@
+package com.smartsubscription.subscription.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.subscription.entity.SubscriptionImportRow;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads bulk import rows of (userId, planId, trialDays, autoRenew) one at a time from
+ * a JSON array or CSV body, so an import never holds its whole input in memory. Rows
+ * with bad values come back with an error instead of failing the import; a body that
+ * cannot be read any further throws UncheckedIOException.
+ */
+public abstract class SubscriptionImportReader implements Iterator<SubscriptionImportRow> {
+
+    private SubscriptionImportRow next;
+    private boolean done;
+
+    public static SubscriptionImportReader json(InputStream in, ObjectMapper objectMapper) {
+        return new JsonReader(in, objectMapper);
+    }
+
+    // Columns userId,planId,trialDays,autoRenew; a header row starting with userId is skipped
+    public static SubscriptionImportReader csv(InputStream in) {
+        return new CsvReader(in);
+    }
+
+    // The next row, or null at the end of the input
+    protected abstract SubscriptionImportRow read() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            done = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public SubscriptionImportRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SubscriptionImportRow row = next;
+        next = null;
+        return row;
+    }
+
+    private static Integer parseTrialDays(String value) {
+        return value == null || value.isEmpty() ? null : Integer.valueOf(value);
+    }
+
+    private static Boolean parseAutoRenew(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("autoRenew must be true or false");
+        }
+        return Boolean.valueOf(value);
+    }
+
+    private static SubscriptionImportRow row(int line, String userId, String planId, String trialDays,
+                                             String autoRenew) {
+        try {
+            return new SubscriptionImportRow(line, userId, planId, parseTrialDays(trialDays),
+                parseAutoRenew(autoRenew), null);
+        } catch (NumberFormatException e) {
+            return new SubscriptionImportRow(line, userId, planId, null, null, "trialDays must be a whole number");
+        } catch (IllegalArgumentException e) {
+            return new SubscriptionImportRow(line, userId, planId, null, null, e.getMessage());
+        }
+    }
+
+    private static final class JsonReader extends SubscriptionImportReader {
+
+        private final JsonParser parser;
+        private int index;
+
+        private JsonReader(InputStream in, ObjectMapper objectMapper) {
+            try {
+                this.parser = objectMapper.getFactory().createParser(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected SubscriptionImportRow read() throws IOException {
+            // Nothing is read before the import starts, so a bad body is reported in the result stream
+            if (index == 0 && parser.currentToken() == null && parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of subscriptions");
+            }
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            index++;
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return new SubscriptionImportRow(index, null, null, null, null, "Expected a JSON object");
+            }
+            JsonNode node = parser.readValueAsTree();
+            return row(index, text(node, "userId"), text(node, "planId"), text(node, "trialDays"),
+                text(node, "autoRenew"));
+        }
+
+        private static String text(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            return value == null || value.isNull() ? null : value.asText();
+        }
+    }
+
+    private static final class CsvReader extends SubscriptionImportReader {
+
+        private final BufferedReader reader;
+        private int line;
+
+        private CsvReader(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected SubscriptionImportRow read() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                if (text == null) {
+                    return null;
+                }
+                line++;
+            } while (text.isBlank() || (line == 1 && text.trim().toLowerCase().startsWith("userid")));
+
+            String[] columns = text.split(",", -1);
+            return row(line, column(columns, 0), column(columns, 1), column(columns, 2), column(columns, 3));
+        }
+
+        private static String column(String[] columns, int index) {
+            if (index >= columns.length) {
+                return null;
+            }
+            String value = columns[index].trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1).trim();
+            }
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
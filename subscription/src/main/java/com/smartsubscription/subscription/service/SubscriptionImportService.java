@@ -0,0 +1,159 @@
+package com.smartsubscription.subscription.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.subscription.entity.Subscription;
+import com.smartsubscription.subscription.entity.SubscriptionImportRow;
+import com.smartsubscription.subscription.entity.SubscriptionPlan;
+import com.smartsubscription.subscription.repository.SubscriptionJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk creation of subscriptions for partner onboarding. Rows are validated against
+ * one snapshot of the active plans, deduplicated in memory, and inserted a chunk at a
+ * time with a single multi-row conditional insert, so a row is skipped rather than
+ * failing the chunk when the user already holds a live subscription to the plan. One
+ * NDJSON result is written per row as soon as its fate is known:
+ * CREATED, EXISTS, DUPLICATE (repeated earlier in the same import) or INVALID.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionImportService {
+
+    private final SubscriptionService subscriptionService;
+    private final SubscriptionJdbcRepository subscriptionJdbcRepository;
+    private final PlanCatalog planCatalog;
+    private final SubscriptionTimeline subscriptionTimeline;
+    private final SubscriptionReadCache subscriptionReadCache;
+    private final ObjectMapper objectMapper;
+
+    // Kept below the 65535 bind parameter limit of a single statement (16 per row)
+    @Value("${subscription.import.chunk-size:1000}")
+    private int chunkSize;
+
+    public void importSubscriptions(Iterator<SubscriptionImportRow> rows, OutputStream out) throws IOException {
+        Map<String, SubscriptionPlan> plans = planCatalog.getActive().stream()
+            .collect(Collectors.toMap(SubscriptionPlan::getId, Function.identity()));
+        Set<String> seen = new HashSet<>();
+        List<SubscriptionImportRow> chunkRows = new ArrayList<>(chunkSize);
+        List<Subscription> chunk = new ArrayList<>(chunkSize);
+        int[] counts = new int[4];
+
+        try {
+            while (rows.hasNext()) {
+                SubscriptionImportRow row = rows.next();
+                String error = validate(row, plans);
+                if (error != null) {
+                    write(out, row, "INVALID", null, error);
+                    counts[3]++;
+                    continue;
+                }
+                if (!seen.add(row.getUserId() + '\n' + row.getPlanId())) {
+                    write(out, row, "DUPLICATE", null, "Same user and plan as an earlier row");
+                    counts[2]++;
+                    continue;
+                }
+
+                SubscriptionPlan plan = plans.get(row.getPlanId());
+                Integer trialDays = row.getTrialDays() != null ? row.getTrialDays() : plan.getTrialDays();
+                Boolean autoRenew = row.getAutoRenew() != null ? row.getAutoRenew() : Boolean.TRUE;
+                chunkRows.add(row);
+                chunk.add(subscriptionService.newSubscription(row.getUserId(), plan,
+                    trialDays == null ? 0 : trialDays, autoRenew));
+                if (chunk.size() >= chunkSize) {
+                    insertChunk(chunkRows, chunk, out, counts);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // The response is already streaming, so the failure is reported in-band
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("status", "ABORTED");
+            result.put("error", "Could not read input: " + e.getCause().getMessage());
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write('\n');
+        }
+        insertChunk(chunkRows, chunk, out, counts);
+
+        log.info("Subscription import finished: {} created, {} existing, {} duplicate, {} invalid",
+            counts[0], counts[1], counts[2], counts[3]);
+    }
+
+    private void insertChunk(List<SubscriptionImportRow> chunkRows, List<Subscription> chunk, OutputStream out,
+                             int[] counts) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> inserted = subscriptionJdbcRepository.insertIfNoLiveSubscriptions(chunk);
+
+        List<String> createdUsers = new ArrayList<>(inserted.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Subscription subscription = chunk.get(i);
+            if (inserted.contains(subscription.getId())) {
+                subscriptionTimeline.track(subscription);
+                createdUsers.add(subscription.getUserId());
+                write(out, chunkRows.get(i), "CREATED", subscription.getId(), null);
+                counts[0]++;
+            } else {
+                write(out, chunkRows.get(i), "EXISTS", null, "User already has a live subscription to this plan");
+                counts[1]++;
+            }
+        }
+        subscriptionReadCache.invalidate(createdUsers);
+        out.flush();
+
+        chunkRows.clear();
+        chunk.clear();
+    }
+
+    private static String validate(SubscriptionImportRow row, Map<String, SubscriptionPlan> plans) {
+        if (row.getError() != null) {
+            return row.getError();
+        }
+        if (row.getUserId() == null || row.getUserId().isBlank()) {
+            return "userId is required";
+        }
+        if (row.getPlanId() == null || row.getPlanId().isBlank()) {
+            return "planId is required";
+        }
+        if (!plans.containsKey(row.getPlanId())) {
+            return "Plan not found or not active";
+        }
+        if (row.getTrialDays() != null && row.getTrialDays() < 0) {
+            return "trialDays must not be negative";
+        }
+        return null;
+    }
+
+    private void write(OutputStream out, SubscriptionImportRow row, String status, String subscriptionId,
+                       String error) throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("line", row.getLine());
+        result.put("userId", row.getUserId());
+        result.put("planId", row.getPlanId());
+        result.put("status", status);
+        if (subscriptionId != null) {
+            result.put("subscriptionId", subscriptionId);
+        }
+        if (error != null) {
+            result.put("error", error);
+        }
+        out.write(objectMapper.writeValueAsBytes(result));
+        out.write('\n');
+    }
+}
@@ -0,0 +1,54 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.subscription.entity.DueSubscription;
+import com.smartsubscription.subscription.event.SubscriptionsExpiredEvent;
+import com.smartsubscription.subscription.repository.DueScan;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Turns committed bulk expiries into messages on the notifications topic
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionNotificationPublisher {
+
+    private static final String NOTIFICATIONS_TOPIC = "notifications";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    @EventListener
+    public void onSubscriptionsExpired(SubscriptionsExpiredEvent event) {
+        boolean trial = event.getReason() == DueScan.TRIAL_ENDING;
+        long timestamp = System.currentTimeMillis();
+
+        for (DueSubscription subscription : event.getSubscriptions()) {
+            try {
+                Map<String, Object> data = new HashMap<>();
+                data.put("subscriptionId", subscription.getId());
+
+                Map<String, Object> notification = new HashMap<>();
+                notification.put("type", "SUBSCRIPTION_EXPIRED");
+                notification.put("title", trial ? "Trial Ended" : "Subscription Expired");
+                notification.put("message", trial
+                    ? "Your free trial has ended."
+                    : "Your subscription has expired. Renew it to keep access.");
+                notification.put("userId", subscription.getUserId());
+                notification.put("timestamp", timestamp);
+                notification.put("data", data);
+
+                kafkaTemplate.send(NOTIFICATIONS_TOPIC, subscription.getUserId(), notification);
+            } catch (Exception e) {
+                // Notification failure shouldn't fail the job
+                log.error("Failed to publish expiry notification for subscription {}: {}",
+                    subscription.getId(), e.getMessage());
+            }
+        }
+        log.debug("Published {} expiry notifications ({})", event.getSubscriptions().size(), event.getReason());
+    }
+}
@@ -0,0 +1,161 @@
+package com.smartsubscription.subscription.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartsubscription.data.routing.ReplicaRoutingDataSource;
+import com.smartsubscription.subscription.entity.DueSubscription;
+import com.smartsubscription.subscription.entity.Subscription;
+import com.smartsubscription.subscription.event.SubscriptionsExpiredEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user cache of subscriptions, bounded by size and time to live. Writes made by
+ * SubscriptionService are applied to the cached list once they commit. Other
+ * subscription instances and the Payment service announce their writes on the
+ * subscription-cache-invalidations topic, and the users they name are evicted here.
+ * Expiries and renewal charge results invalidate too; date moves made by bulk
+ * renewals are left to the time to live.
+ * <p>
+ * Hit, miss and eviction counts are exported as cache.* metrics with
+ * cache=subscriptions-by-user.
+ */
+@Service
+@Slf4j
+public class SubscriptionReadCache {
+
+    public static final String INVALIDATIONS_TOPIC = "subscription-cache-invalidations";
+
+    private final Cache<String, List<Subscription>> byUser;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+
+    public SubscriptionReadCache(KafkaTemplate<String, Object> kafkaTemplate,
+                                 ObjectMapper objectMapper,
+                                 ShardCoordinator shardCoordinator,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${subscription.cache.max-users:100000}") long maxUsers,
+                                 @Value("${subscription.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeId = shardCoordinator.getNodeId();
+        this.byUser = Caffeine.newBuilder()
+            .maximumSize(maxUsers)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byUser, "subscriptions-by-user");
+    }
+
+    // The loader runs at most once per user at a time; later write-throughs wait for it.
+    // What it loads is kept for minutes, so it reads the primary rather than a lagging replica.
+    public List<Subscription> getUserSubscriptions(String userId, Function<String, List<Subscription>> loader) {
+        return byUser.get(userId, id -> Collections.unmodifiableList(
+            new ArrayList<>(ReplicaRoutingDataSource.onPrimary(() -> loader.apply(id)))));
+    }
+
+    /**
+     * Applies a saved subscription to its user's cached list after the surrounding
+     * transaction commits, and tells the other instances to drop that user.
+     */
+    public void written(Subscription subscription) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(subscription);
+                }
+            });
+        } else {
+            apply(subscription);
+        }
+    }
+
+    // For writes that bypass SubscriptionService; call after they commit
+    public void invalidate(Collection<String> userIds) {
+        List<String> distinct = userIds.stream().distinct().collect(Collectors.toList());
+        byUser.invalidateAll(distinct);
+        publish(distinct);
+    }
+
+    @EventListener
+    public void onSubscriptionsExpired(SubscriptionsExpiredEvent event) {
+        invalidate(event.getSubscriptions().stream().map(DueSubscription::getUserId).collect(Collectors.toList()));
+    }
+
+    // Every instance needs every message, hence a group of its own
+    @KafkaListener(topics = INVALIDATIONS_TOPIC, groupId = "subscription-cache-${random.uuid}",
+        properties = "auto.offset.reset=latest")
+    public void onInvalidation(String message) {
+        try {
+            Map<?, ?> payload = objectMapper.readValue(message, Map.class);
+            if (nodeId.equals(payload.get("origin"))) {
+                return;
+            }
+            List<?> userIds = (List<?>) payload.get("userIds");
+            if (userIds != null) {
+                userIds.forEach(userId -> byUser.invalidate(String.valueOf(userId)));
+            }
+        } catch (IOException | ClassCastException e) {
+            log.error("Skipping unreadable cache invalidation: {}", message, e);
+        }
+    }
+
+    private void apply(Subscription subscription) {
+        // Replace or append; only users that are cached are touched
+        byUser.asMap().computeIfPresent(subscription.getUserId(), (userId, cached) -> {
+            List<Subscription> updated = new ArrayList<>(cached.size() + 1);
+            boolean replaced = false;
+            for (Subscription existing : cached) {
+                if (existing.getId().equals(subscription.getId())) {
+                    updated.add(subscription);
+                    replaced = true;
+                } else {
+                    updated.add(existing);
+                }
+            }
+            if (!replaced) {
+                updated.add(subscription);
+            }
+            return Collections.unmodifiableList(updated);
+        });
+        publish(Collections.singletonList(subscription.getUserId()));
+    }
+
+    private void publish(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Object> message = new HashMap<>();
+            message.put("userIds", userIds);
+            message.put("origin", nodeId);
+            message.put("timestamp", System.currentTimeMillis());
+            kafkaTemplate.send(INVALIDATIONS_TOPIC, userIds.get(0), message);
+        } catch (Exception e) {
+            // Other instances fall back on the time to live
+            log.error("Failed to publish cache invalidation for {} users: {}", userIds.size(), e.getMessage());
+        }
+    }
+}
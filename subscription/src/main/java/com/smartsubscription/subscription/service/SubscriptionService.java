@@ -1,23 +1,33 @@
 package com.smartsubscription.subscription.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.data.retry.OptimisticRetryExecutor;
+import com.smartsubscription.subscription.entity.CreateSubscriptionRequest;
 import com.smartsubscription.subscription.entity.Subscription;
+import com.smartsubscription.subscription.entity.SubscriptionPage;
 import com.smartsubscription.subscription.entity.SubscriptionPlan;
 import com.smartsubscription.subscription.entity.SubscriptionStatus;
-import com.smartsubscription.subscription.repository.SubscriptionPlanRepository;
+import com.smartsubscription.subscription.entity.UpdateSubscriptionRequest;
+import com.smartsubscription.subscription.repository.SubscriptionJdbcRepository;
 import com.smartsubscription.subscription.repository.SubscriptionRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,184 +35,262 @@ import java.util.UUID;
 public class SubscriptionService {
     
     private final SubscriptionRepository subscriptionRepository;
-    private final SubscriptionPlanRepository planRepository;
+    private final SubscriptionJdbcRepository subscriptionJdbcRepository;
+    private final PlanCatalog planCatalog;
+    private final RenewalEngine renewalEngine;
+    private final SubscriptionTimeline subscriptionTimeline;
+    private final SubscriptionReadCache subscriptionReadCache;
+    private final OptimisticRetryExecutor optimisticRetry;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
     
-    // Create subscription
-    @Transactional
-    public Subscription createSubscription(String userId, Map<String, Object> request) {
-
-        String planId = (request.containsKey("planId"))? (String) request.get("planId") : null;
-        if (planId == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Plan ID is required");
-        }
-        // Check if user already has active subscription
-        if (subscriptionRepository.existsByUserIdAndPlanIdAndStatus(userId, planId,SubscriptionStatus.ACTIVE)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
-                "User already has an active subscription for given plan");
-        }
-        
-        SubscriptionPlan plan = planRepository.findById(planId)
+    @Value("${subscription.pagination.max-page-size:500}")
+    private int maxPageSize;
+    
+    @Value("${subscription.pagination.stream-flush-rows:100}")
+    private int streamFlushRows;
+    
+    // Create subscription; the only database work is a single conditional insert
+    public Subscription createSubscription(String userId, CreateSubscriptionRequest request) {
+        SubscriptionPlan plan = planCatalog.findById(request.getPlanId())
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Plan not found"));
         
         if (!plan.getIsActive()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Plan is not active");
         }
         
-        // Create subscription
+        Integer trialDays = request.getTrialDays() != null ? request.getTrialDays() : plan.getTrialDays();
+        Boolean autoRenew = request.getAutoRenew() != null ? request.getAutoRenew() : Boolean.TRUE;
+        Subscription subscription = newSubscription(userId, plan, trialDays, autoRenew);
+        
+        // Rejected by the database when the user already holds a live subscription to the plan
+        if (!subscriptionJdbcRepository.insertIfNoLiveSubscription(subscription)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                "User already has an active subscription for given plan");
+        }
+        subscriptionTimeline.track(subscription);
+        subscriptionReadCache.written(subscription);
+        
+        log.info("Created subscription {} for user {}", subscription.getId(), userId);
+        return subscription;
+    }
+    
+    // A new, unsaved subscription to the plan, in trial when trialDays is positive
+    Subscription newSubscription(String userId, SubscriptionPlan plan, Integer trialDays, Boolean autoRenew) {
+        LocalDateTime now = LocalDateTime.now();
         Subscription subscription = new Subscription();
-        subscription.setId(UUID.randomUUID().toString());
         subscription.setUserId(userId);
         subscription.setPlanId(plan.getId());
         subscription.setPlanName(plan.getName());
         subscription.setStatus(SubscriptionStatus.ACTIVE);
-        subscription.setStartDate(LocalDateTime.now());
-        subscription.setEndDate(calculateEndDate(LocalDateTime.now(), plan.getBillingCycle()));
+        subscription.setStartDate(now);
+        subscription.setEndDate(calculateEndDate(now, plan.getBillingCycle()));
         subscription.setNextBillingDate(subscription.getEndDate());
         subscription.setPrice(plan.getPrice());
         subscription.setCurrency(plan.getCurrency());
         subscription.setBillingCycle(plan.getBillingCycle());
         
         // Handle trial
-        Integer trialDays = (Integer) request.getOrDefault("trialDays", plan.getTrialDays());
         subscription.setTrialDays(trialDays);
-        
         if (trialDays > 0) {
             subscription.setStatus(SubscriptionStatus.TRIAL);
-            subscription.setTrialEndDate(LocalDateTime.now().plusDays(trialDays));
+            subscription.setTrialEndDate(now.plusDays(trialDays));
         }
         
-        // Auto renew
-        Boolean autoRenew = (Boolean) request.getOrDefault("autoRenew", true);
         subscription.setAutoRenew(autoRenew);
-        
-        subscriptionRepository.save(subscription);
-        
-        log.info("Created subscription {} for user {}", subscription.getId(), userId);
         return subscription;
     }
     
-    // Get user subscriptions
+    // Get user subscriptions (cached per user)
     public List<Subscription> getUserSubscriptions(String userId) {
-        return subscriptionRepository.findByUserId(userId);
+        return subscriptionReadCache.getUserSubscriptions(userId, subscriptionRepository::findByUserId);
+    }
+    
+    /**
+     * One page of a user's subscriptions in (createdAt, id) order. The cursor is the
+     * opaque nextCursor of the previous page, or null for the first page.
+     */
+    @Transactional(readOnly = true)
+    public SubscriptionPage getUserSubscriptionsPage(String userId, String cursor, int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Page size must be between 1 and " + maxPageSize);
+        }
+        
+        // Fetch one extra row to learn whether there is a next page
+        Pageable page = PageRequest.of(0, size + 1);
+        List<Subscription> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = subscriptionRepository.findFirstPageByUserId(userId, page);
+        } else {
+            SubscriptionCursor after = SubscriptionCursor.decode(cursor);
+            rows = subscriptionRepository.findPageByUserIdAfter(userId, after.getCreatedAt(), after.getId(), page);
+        }
+        
+        if (rows.size() <= size) {
+            return new SubscriptionPage(rows, null);
+        }
+        List<Subscription> items = rows.subList(0, size);
+        Subscription last = items.get(size - 1);
+        return new SubscriptionPage(items, new SubscriptionCursor(last.getCreatedAt(), last.getId()).encode());
+    }
+    
+    /**
+     * Writes every subscription of the user to the stream as newline-delimited JSON,
+     * reading through a database cursor and detaching each row once it is written,
+     * so memory use does not grow with the account.
+     */
+    @Transactional(readOnly = true)
+    public void streamUserSubscriptions(String userId, OutputStream out) throws IOException {
+        try (Stream<Subscription> subscriptions = subscriptionRepository.streamByUserId(userId)) {
+            Iterator<Subscription> rows = subscriptions.iterator();
+            int written = 0;
+            while (rows.hasNext()) {
+                Subscription subscription = rows.next();
+                out.write(objectMapper.writeValueAsBytes(subscription));
+                out.write('\n');
+                entityManager.detach(subscription);
+                if (++written % streamFlushRows == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
     }
     
     // Get subscription by ID
     public Subscription getSubscription(String subscriptionId, String userId) {
-        return subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
+        return getUserSubscriptions(userId).stream()
+            .filter(subscription -> subscription.getId().equals(subscriptionId))
+            .findFirst()
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
                 "Subscription not found"));
     }
     
     // Update subscription
-    @Transactional
-    public Subscription updateSubscription(String subscriptionId, String userId, Map<String, Object> updates) {
-        Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
-                "Subscription not found"));
+    public Subscription updateSubscription(String subscriptionId, String userId, UpdateSubscriptionRequest updates) {
+        return optimisticRetry.execute("update", () -> {
+            Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
+                    "Subscription not found"));
         
-        // Update auto-renew
-        if (updates.containsKey("autoRenew")) {
-            subscription.setAutoRenew((Boolean) updates.get("autoRenew"));
-        }
+            // Update auto-renew
+            if (updates.getAutoRenew() != null) {
+                subscription.setAutoRenew(updates.getAutoRenew());
+            }
         
-        // Update plan (upgrade/downgrade)
-        if (updates.containsKey("planId")) {
-            String newPlanId = (String) updates.get("planId");
-            SubscriptionPlan newPlan = planRepository.findById(newPlanId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Plan not found"));
+            // Update plan (upgrade/downgrade)
+            if (updates.getPlanId() != null) {
+                SubscriptionPlan newPlan = planCatalog.findById(updates.getPlanId())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Plan not found"));
             
-            // Update subscription with new plan
-            subscription.setPlanId(newPlan.getId());
-            subscription.setPlanName(newPlan.getName());
-            subscription.setPrice(newPlan.getPrice());
-            subscription.setBillingCycle(newPlan.getBillingCycle());
-            subscription.setEndDate(calculateEndDate(LocalDateTime.now(), newPlan.getBillingCycle()));
-            subscription.setNextBillingDate(subscription.getEndDate());
+                // Update subscription with new plan
+                subscription.setPlanId(newPlan.getId());
+                subscription.setPlanName(newPlan.getName());
+                subscription.setPrice(newPlan.getPrice());
+                subscription.setBillingCycle(newPlan.getBillingCycle());
+                subscription.setEndDate(calculateEndDate(LocalDateTime.now(), newPlan.getBillingCycle()));
+                subscription.setNextBillingDate(subscription.getEndDate());
             
-            log.info("User {} upgraded to plan {}", userId, newPlan.getName());
-        }
+                log.info("User {} upgraded to plan {}", userId, newPlan.getName());
+            }
         
-        return subscriptionRepository.save(subscription);
+            Subscription saved = subscriptionRepository.save(subscription);
+            subscriptionTimeline.track(saved);
+            subscriptionReadCache.written(saved);
+            return saved;
+        });
     }
     
     // Cancel subscription
-    @Transactional
     public Subscription cancelSubscription(String subscriptionId, String userId, String reason) {
-        Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
-                "Subscription not found"));
+        return optimisticRetry.execute("cancel", () -> {
+            Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
+                    "Subscription not found"));
         
-        if (subscription.getStatus() == SubscriptionStatus.CANCELLED) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
-                "Subscription already cancelled");
-        }
+            if (subscription.getStatus() == SubscriptionStatus.CANCELLED) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                    "Subscription already cancelled");
+            }
         
-        subscription.setStatus(SubscriptionStatus.CANCELLED);
-        subscription.setCancellationReason(reason);
-        subscription.setEndDate(LocalDateTime.now());
-        subscription.setNextBillingDate(null);
+            subscription.setStatus(SubscriptionStatus.CANCELLED);
+            subscription.setCancellationReason(reason);
+            subscription.setEndDate(LocalDateTime.now());
+            subscription.setNextBillingDate(null);
         
-        subscriptionRepository.save(subscription);
+            subscriptionRepository.save(subscription);
+            subscriptionTimeline.track(subscription);
+            subscriptionReadCache.written(subscription);
         
-        log.info("Cancelled subscription {} for user {}", subscription.getId(), userId);
-        return subscription;
+            log.info("Cancelled subscription {} for user {}", subscription.getId(), userId);
+            return subscription;
+        });
     }
     
     // Pause subscription
-    @Transactional
     public Subscription pauseSubscription(String subscriptionId, String userId) {
-        Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
-                "Subscription not found"));
+        return optimisticRetry.execute("pause", () -> {
+            Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
+                    "Subscription not found"));
         
-        if (subscription.getStatus() != SubscriptionStatus.ACTIVE) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
-                "Only active subscriptions can be paused");
-        }
+            if (subscription.getStatus() != SubscriptionStatus.ACTIVE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                    "Only active subscriptions can be paused");
+            }
         
-        subscription.setStatus(SubscriptionStatus.PAUSED);
+            subscription.setStatus(SubscriptionStatus.PAUSED);
         
-        subscriptionRepository.save(subscription);
+            subscriptionRepository.save(subscription);
+            subscriptionTimeline.track(subscription);
+            subscriptionReadCache.written(subscription);
         
-        log.info("Paused subscription {} for user {}", subscription.getId(), userId);
-        return subscription;
+            log.info("Paused subscription {} for user {}", subscription.getId(), userId);
+            return subscription;
+        });
     }
     
     // Resume subscription
-    @Transactional
     public Subscription resumeSubscription(String subscriptionId, String userId) {
-        Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
-                "Subscription not found"));
+        return optimisticRetry.execute("resume", () -> {
+            Subscription subscription = subscriptionRepository.findByIdAndUserId(subscriptionId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
+                    "Subscription not found"));
         
-        if (subscription.getStatus() != SubscriptionStatus.PAUSED) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
-                "Only paused subscriptions can be resumed");
-        }
+            if (subscription.getStatus() != SubscriptionStatus.PAUSED) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                    "Only paused subscriptions can be resumed");
+            }
         
-        subscription.setStatus(SubscriptionStatus.ACTIVE);
+            subscription.setStatus(SubscriptionStatus.ACTIVE);
         
-        subscriptionRepository.save(subscription);
+            subscriptionRepository.save(subscription);
+            subscriptionTimeline.track(subscription);
+            subscriptionReadCache.written(subscription);
         
-        log.info("Resumed subscription {} for user {}", subscription.getId(), userId);
-        return subscription;
+            log.info("Resumed subscription {} for user {}", subscription.getId(), userId);
+            return subscription;
+        });
     }
     
     // Get active subscription for user
     public Subscription getActiveSubscription(String userId) {
-        return subscriptionRepository.findByUserIdAndStatus(userId, SubscriptionStatus.ACTIVE)
+        return getUserSubscriptions(userId).stream()
+            .filter(subscription -> subscription.getStatus() == SubscriptionStatus.ACTIVE)
+            .findFirst()
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
                 "No active subscription found"));
     }
     
     // Get all subscription plans
     public List<SubscriptionPlan> getAllPlans() {
-        return planRepository.findByIsActiveTrueOrderBySortOrderAsc();
+        return planCatalog.getActive();
     }
     
     // Get plan by code
     public SubscriptionPlan getPlanByCode(String planCode) {
-        return planRepository.findByCode(planCode)
+        return planCatalog.findByCode(planCode)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
                 "Plan not found"));
     }
@@ -211,39 +299,7 @@ public class SubscriptionService {
     @Scheduled(cron = "0 0 1 * * ?") // Run daily at 1 AM
     public void processRenewals() {
         log.info("Processing subscription renewals");
-        
-        LocalDateTime now = LocalDateTime.now();
-        List<Subscription> dueForRenewal = subscriptionRepository
-            .findByStatusAndNextBillingDateBefore(SubscriptionStatus.ACTIVE, now);
-        
-        for (Subscription subscription : dueForRenewal) {
-            try {
-                // Check if auto-renew is enabled
-                if (Boolean.TRUE.equals(subscription.getAutoRenew())) {
-                    // Renew subscription
-                    subscription.setStartDate(LocalDateTime.now());
-                    subscription.setEndDate(calculateEndDate(LocalDateTime.now(), subscription.getBillingCycle()));
-                    subscription.setNextBillingDate(subscription.getEndDate());
-                    subscriptionRepository.save(subscription);
-                    
-                    log.info("Renewed subscription {} for user {}", 
-                        subscription.getId(), subscription.getUserId());
-                    
-                    // Here you would typically call payment service
-                    // paymentService.processPayment(subscription.getUserId(), subscription.getPrice());
-                } else {
-                    // Expire subscription
-                    subscription.setStatus(SubscriptionStatus.EXPIRED);
-                    subscriptionRepository.save(subscription);
-                    
-                    log.info("Expired subscription {} for user {}", 
-                        subscription.getId(), subscription.getUserId());
-                }
-            } catch (Exception e) {
-                log.error("Failed to process renewal for subscription {}: {}", 
-                    subscription.getId(), e.getMessage());
-            }
-        }
+        renewalEngine.runRenewals(LocalDateTime.now());
     }
     
     // Scheduled job to end trials
@@ -251,35 +307,13 @@ public class SubscriptionService {
     public void processTrialEndings() {
         log.info("Processing trial endings");
         
-        LocalDateTime now = LocalDateTime.now();
-        List<Subscription> trialsEnding = subscriptionRepository
-            .findByStatusAndTrialEndDateBefore(SubscriptionStatus.TRIAL, now);
-        
-        for (Subscription subscription : trialsEnding) {
-            try {
-                // Convert trial to active (if payment succeeds) or expired
-                // For simplicity, we'll mark as expired
-                subscription.setStatus(SubscriptionStatus.EXPIRED);
-                subscriptionRepository.save(subscription);
-                
-                log.info("Trial ended for subscription {} for user {}", 
-                    subscription.getId(), subscription.getUserId());
-            } catch (Exception e) {
-                log.error("Failed to process trial ending for subscription {}: {}", 
-                    subscription.getId(), e.getMessage());
-            }
-        }
+        // Convert trial to active (if payment succeeds) or expired
+        // For simplicity, we'll mark as expired
+        renewalEngine.runTrialEndings(LocalDateTime.now());
     }
     
     // Helper method to calculate end date
     private LocalDateTime calculateEndDate(LocalDateTime startDate, String billingCycle) {
-        return switch (billingCycle.toUpperCase()) {
-            case "MONTHLY" -> startDate.plusMonths(1);
-            case "QUARTERLY" -> startDate.plusMonths(3);
-            case "YEARLY" -> startDate.plusYears(1);
-            case "WEEKLY" -> startDate.plusWeeks(1);
-            case "DAILY" -> startDate.plusDays(1);
-            default -> startDate.plusMonths(1);
-        };
+        return BillingPeriods.endDate(startDate, billingCycle);
     }
 }
\ No newline at end of file
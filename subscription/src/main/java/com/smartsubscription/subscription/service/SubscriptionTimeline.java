@@ -0,0 +1,240 @@
+package com.smartsubscription.subscription.service;
+
+import com.smartsubscription.subscription.config.RenewalWorkerPool;
+import com.smartsubscription.subscription.entity.DueSubscription;
+import com.smartsubscription.subscription.entity.RenewalCharge;
+import com.smartsubscription.subscription.entity.Subscription;
+import com.smartsubscription.subscription.entity.SubscriptionStatus;
+import com.smartsubscription.subscription.event.ShardsAcquiredEvent;
+import com.smartsubscription.subscription.event.SubscriptionsExpiredEvent;
+import com.smartsubscription.subscription.repository.DueScan;
+import com.smartsubscription.subscription.repository.RenewalChargeRepository;
+import com.smartsubscription.subscription.repository.SubscriptionJdbcRepository;
+import com.smartsubscription.subscription.scheduler.HierarchicalTimer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Near-real-time renewals and trial endings. Everything falling due within the next
+ * subscription.timeline.horizon-hours is held in a hierarchical timing wheel and
+ * transitioned within about a tick of its due time, instead of waiting for the
+ * nightly jobs. The wheel is loaded from the database for the shards this instance
+ * holds, and kept current by SubscriptionService; the nightly jobs remain as a sweep
+ * for anything missed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionTimeline implements DisposableBean {
+
+    private final SubscriptionJdbcRepository subscriptionJdbcRepository;
+    private final RenewalChargeRepository renewalChargeRepository;
+    private final RenewalChargePipeline chargePipeline;
+    private final TransactionTemplate transactionTemplate;
+    private final RenewalWorkerPool workerPool;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardCoordinator shardCoordinator;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${subscription.timeline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${subscription.timeline.horizon-hours:24}")
+    private int horizonHours;
+
+    @Value("${subscription.timeline.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${subscription.timeline.wheel-size:60}")
+    private int wheelSize;
+
+    @Value("${subscription.renewal.chunk-size:500}")
+    private int pageSize;
+
+    private volatile HierarchicalTimer<DueSubscriptionRef> timer;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Subscription timeline disabled; relying on the nightly jobs");
+            return;
+        }
+        timer = new HierarchicalTimer<>("subscription-timeline", tickMillis, wheelSize,
+            ref -> workerPool.submit(() -> transition(ref)));
+        reload();
+    }
+
+    // Picks up everything that moved into the horizon since the last load
+    @Scheduled(fixedDelayString = "${subscription.timeline.reload-interval-ms:43200000}",
+        initialDelayString = "${subscription.timeline.reload-interval-ms:43200000}")
+    public void reload() {
+        if (timer == null) {
+            return;
+        }
+        LocalDateTime horizon = LocalDateTime.now().plusHours(horizonHours);
+        Set<Integer> shards = shardCoordinator.getOwnedShards();
+        if (shards.isEmpty()) {
+            return;
+        }
+        for (DueScan scan : DueScan.values()) {
+            DueSubscription cursor = null;
+            List<DueSubscription> page;
+            do {
+                page = subscriptionJdbcRepository.findUpcoming(scan, horizon, shards,
+                    shardCoordinator.getShardCount(), cursor, pageSize);
+                page.forEach(subscription -> schedule(scan, subscription.getId(), subscription.getDueAt()));
+                cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+            } while (page.size() == pageSize);
+        }
+        log.info("Subscription timeline loaded up to {}: {} transitions pending", horizon, timer.size());
+    }
+
+    // Loads what is due on shards taken over from another instance
+    @EventListener
+    public void onShardsAcquired(ShardsAcquiredEvent event) {
+        if (timer != null) {
+            taskScheduler.schedule(this::reload, Instant.now());
+        }
+    }
+
+    /**
+     * Re-evaluates the timers of a subscription after it changed. Called inside the
+     * mutating transaction, the wheel is only touched once the change has committed.
+     */
+    public void track(Subscription subscription) {
+        if (timer == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(subscription);
+                }
+            });
+        } else {
+            apply(subscription);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (timer != null) {
+            timer.close();
+        }
+    }
+
+    private void apply(Subscription subscription) {
+        String id = subscription.getId();
+        if (subscription.getStatus() == SubscriptionStatus.ACTIVE && subscription.getNextBillingDate() != null) {
+            schedule(DueScan.RENEWAL, id, subscription.getNextBillingDate());
+        } else {
+            timer.cancel(key(DueScan.RENEWAL, id));
+        }
+        if (subscription.getStatus() == SubscriptionStatus.TRIAL && subscription.getTrialEndDate() != null) {
+            schedule(DueScan.TRIAL_ENDING, id, subscription.getTrialEndDate());
+        } else {
+            timer.cancel(key(DueScan.TRIAL_ENDING, id));
+        }
+    }
+
+    private void schedule(DueScan scan, String id, LocalDateTime dueAt) {
+        if (dueAt.isAfter(LocalDateTime.now().plusHours(horizonHours))) {
+            // Out of range for now; a later reload will pick it up
+            timer.cancel(key(scan, id));
+            return;
+        }
+        timer.schedule(key(scan, id), toEpochMillis(dueAt), new DueSubscriptionRef(scan, id, dueAt));
+    }
+
+    // Runs on a worker; every statement is guarded, so racing with the nightly sweep is harmless
+    private void transition(DueSubscriptionRef ref) {
+        // The wheel may fire up to one tick early
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = ref.dueAt.isAfter(now) ? ref.dueAt : now;
+        try {
+            Optional<DueSubscription> due = subscriptionJdbcRepository.findDueById(ref.scan, ref.id, cutoff);
+            if (due.isEmpty()) {
+                return;
+            }
+
+            DueSubscription subscription = due.get();
+            if (ref.scan == DueScan.RENEWAL && Boolean.TRUE.equals(subscription.getAutoRenew())) {
+                LocalDateTime nextBillingDate = BillingPeriods.endDate(now, subscription.getBillingCycle());
+                List<RenewalCharge> charges = new ArrayList<>();
+                Integer renewed = transactionTemplate.execute(status -> {
+                    int rows = subscriptionJdbcRepository.renew(
+                        Collections.singletonList(subscription), now, row -> nextBillingDate);
+                    if (rows > 0 && chargePipeline.isEnabled()) {
+                        charges.addAll(renewalChargeRepository.createForRenewed(
+                            Collections.singletonList(subscription.getId()), now));
+                    }
+                    return rows;
+                });
+                chargePipeline.submit(charges);
+                if (renewed != null && renewed > 0) {
+                    log.info("Renewed subscription {} for user {}", subscription.getId(), subscription.getUserId());
+                    schedule(DueScan.RENEWAL, subscription.getId(), nextBillingDate);
+                }
+            } else {
+                Optional<DueSubscription> expired = transactionTemplate.execute(status ->
+                    subscriptionJdbcRepository.expireById(ref.scan, ref.id, cutoff, now));
+                if (expired != null && expired.isPresent()) {
+                    log.info("Expired subscription {} for user {}", subscription.getId(), subscription.getUserId());
+                    eventPublisher.publishEvent(new SubscriptionsExpiredEvent(ref.scan,
+                        Collections.singletonList(expired.get())));
+                }
+            }
+        } catch (DataAccessException e) {
+            // Left for the nightly sweep
+            log.error("Failed to transition subscription {} ({}): {}", ref.id, ref.scan, e.getMessage());
+        }
+    }
+
+    private static String key(DueScan scan, String id) {
+        return scan.name() + ':' + id;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class DueSubscriptionRef {
+
+        private final DueScan scan;
+        private final String id;
+        private final LocalDateTime dueAt;
+
+        private DueSubscriptionRef(DueScan scan, String id, LocalDateTime dueAt) {
+            this.scan = scan;
+            this.id = id;
+            this.dueAt = dueAt;
+        }
+
+        @Override
+        public String toString() {
+            return scan + " " + id + " at " + dueAt;
+        }
+    }
+}
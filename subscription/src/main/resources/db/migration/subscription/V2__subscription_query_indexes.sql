@@ -0,0 +1,29 @@
+-- Indexes for the subscription lookups and the nightly due scans. Built concurrently so
+-- the migration does not block writes on a live table; Flyway runs this script outside a
+-- transaction. IF NOT EXISTS covers databases where ddl-auto already created an index.
+
+-- findFirstPageByUserId / findPageByUserIdAfter / findByUserId / streamByUserId
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_subscriptions_user_created
+    ON subscriptions (user_id, created_at, id);
+
+-- findByUserIdAndStatus / existsByUserIdAndStatus / countByUserIdAndStatus
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_subscriptions_user_status
+    ON subscriptions (user_id, status);
+
+-- existsByUserIdAndPlanIdAndStatus
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_subscriptions_user_plan_status
+    ON subscriptions (user_id, plan_id, status);
+
+-- findByStatusAndNextBillingDateBefore, and the keyset-ordered due scans
+-- (status = ? AND next_billing_date < ? ORDER BY next_billing_date, id)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_subscriptions_status_next_billing
+    ON subscriptions (status, next_billing_date, id);
+
+-- findByStatusAndTrialEndDateBefore, and the trial-ending due scans
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_subscriptions_status_trial_end
+    ON subscriptions (status, trial_end_date, id);
+
+-- Auto-renew candidates read by the nightly renewal job; a small slice of the table
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_subscriptions_auto_renew_due
+    ON subscriptions (next_billing_date, id)
+    WHERE status = 'ACTIVE' AND auto_renew = true;
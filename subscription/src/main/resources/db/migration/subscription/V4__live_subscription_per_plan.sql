@@ -0,0 +1,27 @@
+-- At most one live (not cancelled or expired) subscription per user and plan. The
+-- subscribe path inserts with ON CONFLICT against this index instead of checking first.
+-- Built concurrently, outside a transaction, so the script mixes statements that need one
+-- with statements that cannot run in one (spring.flyway.mixed). Safe to run again after a
+-- failure: duplicates created meanwhile are cancelled again, and a half-built index is
+-- dropped and rebuilt.
+
+-- Older duplicates of a live subscription are cancelled; the newest one is kept
+UPDATE subscriptions s
+SET status = 'CANCELLED',
+    cancellation_reason = 'Duplicate of a newer subscription to the same plan',
+    updated_at = now(),
+    version = s.version + 1
+FROM (
+    SELECT id, row_number() OVER (PARTITION BY user_id, plan_id
+                                  ORDER BY created_at DESC NULLS LAST, id DESC) AS newest_first
+    FROM subscriptions
+    WHERE status NOT IN ('CANCELLED', 'EXPIRED')
+) live
+WHERE s.id = live.id AND live.newest_first > 1;
+
+-- A failed concurrent build leaves an invalid index behind that IF NOT EXISTS would keep
+DROP INDEX CONCURRENTLY IF EXISTS idx_subscriptions_live_plan;
+
+CREATE UNIQUE INDEX CONCURRENTLY idx_subscriptions_live_plan
+    ON subscriptions (user_id, plan_id)
+    WHERE status NOT IN ('CANCELLED', 'EXPIRED');
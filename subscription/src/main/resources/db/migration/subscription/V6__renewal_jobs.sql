@@ -0,0 +1,80 @@
+-- Tables for the sharded scheduled jobs, the renewal run ledger and renewal billing.
+-- They are new with this version, so databases baselined at V1 get them here.
+
+CREATE TABLE job_nodes (
+    node_id      varchar(255) NOT NULL PRIMARY KEY,
+    heartbeat_at timestamp(6) NOT NULL
+);
+
+CREATE TABLE job_shard_leases (
+    shard      integer      NOT NULL PRIMARY KEY,
+    owner_id   varchar(255) NOT NULL,
+    expires_at timestamp(6) NOT NULL
+);
+
+CREATE TABLE renewal_runs (
+    id          varchar(255) NOT NULL PRIMARY KEY,
+    job         varchar(255) NOT NULL,
+    node_id     varchar(255) NOT NULL,
+    cutoff      timestamp(6) NOT NULL,
+    status      varchar(255) NOT NULL,
+    started_at  timestamp(6) NOT NULL,
+    finished_at timestamp(6),
+    renewed     bigint,
+    expired     bigint,
+    failed      bigint
+);
+
+CREATE INDEX idx_renewal_runs_job_status ON renewal_runs (job, status);
+
+CREATE TABLE renewal_run_partitions (
+    run_id            varchar(255) NOT NULL,
+    partition_id      integer      NOT NULL,
+    phase             varchar(255) NOT NULL,
+    high_water_due_at timestamp(6),
+    high_water_id     varchar(255),
+    renewed           bigint       NOT NULL,
+    expired           bigint       NOT NULL,
+    failed            bigint       NOT NULL,
+    chunks            integer      NOT NULL,
+    updated_at        timestamp(6) NOT NULL,
+    PRIMARY KEY (run_id, partition_id)
+);
+
+CREATE INDEX idx_renewal_run_partitions_phase ON renewal_run_partitions (partition_id, phase);
+
+CREATE TABLE renewal_run_chunks (
+    id           bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    run_id       varchar(255) NOT NULL,
+    partition_id integer      NOT NULL,
+    seq          integer      NOT NULL,
+    kind         varchar(255) NOT NULL,
+    status       varchar(255) NOT NULL,
+    first_id     varchar(255),
+    last_id      varchar(255),
+    row_count    integer      NOT NULL,
+    created_at   timestamp(6) NOT NULL
+);
+
+CREATE INDEX idx_renewal_run_chunks_run ON renewal_run_chunks (run_id, partition_id, seq);
+
+CREATE TABLE renewal_charges (
+    id              varchar(255)  NOT NULL PRIMARY KEY,
+    subscription_id varchar(255)  NOT NULL,
+    user_id         varchar(255)  NOT NULL,
+    amount          numeric(38,2) NOT NULL,
+    currency        varchar(255)  NOT NULL,
+    period_end      timestamp(6)  NOT NULL,
+    status          varchar(255)  NOT NULL,
+    attempts        integer       NOT NULL,
+    transaction_id  varchar(255),
+    error           varchar(255),
+    created_at      timestamp(6)  NOT NULL,
+    updated_at      timestamp(6)  NOT NULL,
+    CONSTRAINT uk_renewal_charges_period UNIQUE (subscription_id, period_end)
+);
+
+CREATE INDEX idx_renewal_charges_pending ON renewal_charges (status, updated_at);
+
+-- Stale charge resubmission only ever looks at charges still waiting on Payment
+CREATE INDEX idx_renewal_charges_stale ON renewal_charges (updated_at) WHERE status = 'PENDING';
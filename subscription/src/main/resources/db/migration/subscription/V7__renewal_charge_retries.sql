@@ -0,0 +1,12 @@
+-- Retries of failed renewal charges. A billing period keeps every charge it was ever
+-- tried with: a charge Payment declined stays FAILED and the retry is a new charge, so
+-- only one charge per period may be open or paid. retry counts the rounds per period.
+ALTER TABLE renewal_charges DROP CONSTRAINT uk_renewal_charges_period;
+
+CREATE UNIQUE INDEX uk_renewal_charges_open_period
+    ON renewal_charges (subscription_id, period_end)
+    WHERE status <> 'FAILED';
+
+CREATE INDEX idx_renewal_charges_period ON renewal_charges (subscription_id, period_end);
+
+ALTER TABLE renewal_charges ADD COLUMN retry integer NOT NULL DEFAULT 0;
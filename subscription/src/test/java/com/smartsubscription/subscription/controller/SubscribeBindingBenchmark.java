@@ -0,0 +1,108 @@
+package com.smartsubscription.subscription.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartsubscription.subscription.entity.CreateSubscriptionRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What binding a POST /subscribe body costs, before any database work: the untyped
+ * Map the endpoint used to bind, read the way SubscriptionService used to read it,
+ * against the typed CreateSubscriptionRequest with and without Bean Validation. Run
+ * with -prof gc for the allocation per request:
+ * <pre>
+ * mvn -pl subscription test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main SubscribeBindingBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscribeBindingBenchmark {
+
+    private static final byte[] BODY =
+        "{\"planId\":\"plan-premium-monthly\",\"trialDays\":14,\"autoRenew\":false}".getBytes();
+    private static final byte[] INVALID_BODY = "{\"trialDays\":-1}".getBytes();
+    private static final int PLAN_TRIAL_DAYS = 7;
+
+    private ObjectMapper objectMapper;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        // All three read the same subscription out of the body, and validation catches the bad one
+        String plan = mapBinding()[0].toString();
+        if (!plan.equals(typedBinding().getPlanId()) || !plan.equals(typedBindingValidated().getPlanId())
+                || validator.validate(objectMapper.readValue(INVALID_BODY, CreateSubscriptionRequest.class)).size() != 2) {
+            throw new IllegalStateException("Bindings disagree");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    // The removed path: a LinkedHashMap of boxed values, looked up and cast field by field
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object[] mapBinding() throws IOException {
+        Map<String, Object> request = objectMapper.readValue(BODY, Map.class);
+        String planId = request.containsKey("planId") ? (String) request.get("planId") : null;
+        if (planId == null) {
+            throw new IllegalArgumentException("Plan ID is required");
+        }
+        Integer trialDays = (Integer) request.getOrDefault("trialDays", PLAN_TRIAL_DAYS);
+        Boolean autoRenew = (Boolean) request.getOrDefault("autoRenew", true);
+        return new Object[]{planId, trialDays, autoRenew};
+    }
+
+    @Benchmark
+    public CreateSubscriptionRequest typedBinding() throws IOException {
+        return objectMapper.readValue(BODY, CreateSubscriptionRequest.class);
+    }
+
+    // What @Valid @RequestBody does for every request
+    @Benchmark
+    public CreateSubscriptionRequest typedBindingValidated() throws IOException {
+        CreateSubscriptionRequest request = objectMapper.readValue(BODY, CreateSubscriptionRequest.class);
+        Set<ConstraintViolation<CreateSubscriptionRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.iterator().next().getMessage());
+        }
+        return request;
+    }
+
+    // A rejected body: violations interpolate their messages, the expensive part of validation
+    @Benchmark
+    public Set<ConstraintViolation<CreateSubscriptionRequest>> typedBindingRejected() throws IOException {
+        return validator.validate(objectMapper.readValue(INVALID_BODY, CreateSubscriptionRequest.class));
+    }
+}
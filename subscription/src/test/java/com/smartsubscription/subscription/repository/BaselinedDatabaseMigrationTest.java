@@ -0,0 +1,52 @@
+package com.smartsubscription.subscription.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A database created by ddl-auto before Flyway is baselined at V1, which is skipped.
+ * Everything added since must therefore come from later versions.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class BaselinedDatabaseMigrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Test
+    void baselinedDatabaseGetsRenewalJobTables() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        // The schema ddl-auto left behind, without Flyway's history table
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/subscription/V1__baseline.sql"))
+            .execute(dataSource);
+
+        // Configured as the service configures it through spring.flyway
+        Flyway.configure()
+            .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+            .mixed(true)
+            .baselineOnMigrate(true)
+            .baselineVersion("1")
+            .dataSource(dataSource)
+            .locations("classpath:db/migration/subscription")
+            .load()
+            .migrate();
+
+        List<String> tables = new JdbcTemplate(dataSource).queryForList(
+            "SELECT table_name FROM information_schema.tables WHERE table_schema = 'public'", String.class);
+        assertThat(tables).contains("job_nodes", "job_shard_leases", "renewal_runs", "renewal_run_partitions",
+            "renewal_run_chunks", "renewal_charges");
+    }
+}
@@ -0,0 +1,75 @@
+package com.smartsubscription.subscription.repository;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * V4 on a database that already holds duplicate live subscriptions and the invalid
+ * index a failed concurrent build leaves behind: the duplicates are cancelled, the
+ * newest kept, and the index comes out valid.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class LivePlanIndexMigrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final String INSERT =
+        "INSERT INTO subscriptions (id, user_id, plan_id, plan_name, status, start_date, price, currency, " +
+        "billing_cycle, created_at) VALUES (?, ?, ?, 'Plan', ?, now(), 9.99, 'USD', 'MONTHLY', " +
+        "now() - ? * interval '1 day')";
+
+    @Test
+    void cancelsOlderDuplicatesAndRebuildsInvalidIndex() {
+        flyway().target("3").load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+
+        jdbcTemplate.update(INSERT, "sub-old", "user-1", "plan-a", "ACTIVE", 30);
+        jdbcTemplate.update(INSERT, "sub-mid", "user-1", "plan-a", "PAUSED", 20);
+        jdbcTemplate.update(INSERT, "sub-new", "user-1", "plan-a", "ACTIVE", 10);
+        jdbcTemplate.update(INSERT, "sub-gone", "user-1", "plan-a", "EXPIRED", 5);
+        jdbcTemplate.update(INSERT, "sub-other", "user-1", "plan-b", "ACTIVE", 30);
+
+        // What the previous version of V4 left behind when it hit the duplicates
+        assertThatThrownBy(() -> jdbcTemplate.execute(
+            "CREATE UNIQUE INDEX CONCURRENTLY idx_subscriptions_live_plan ON subscriptions (user_id, plan_id) " +
+            "WHERE status NOT IN ('CANCELLED', 'EXPIRED')"));
+        assertThat(isValid(jdbcTemplate)).isFalse();
+
+        flyway().load().migrate();
+
+        assertThat(isValid(jdbcTemplate)).isTrue();
+        List<String> live = jdbcTemplate.queryForList(
+            "SELECT id FROM subscriptions WHERE status NOT IN ('CANCELLED', 'EXPIRED') ORDER BY id", String.class);
+        assertThat(live).containsExactly("sub-new", "sub-other");
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT status FROM subscriptions WHERE id = 'sub-gone'", String.class)).isEqualTo("EXPIRED");
+    }
+
+    private static boolean isValid(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT indisvalid FROM pg_index " +
+            "WHERE indexrelid = 'idx_subscriptions_live_plan'::regclass", Boolean.class);
+    }
+
+    // Configured as the service configures it through spring.flyway
+    private static FluentConfiguration flyway() {
+        return Flyway.configure()
+            .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+            .mixed(true)
+            .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+            .locations("classpath:db/migration/subscription");
+    }
+}
@@ -0,0 +1,136 @@
+package com.smartsubscription.subscription.repository;
+
+import com.smartsubscription.subscription.entity.RenewalCharge;
+import com.smartsubscription.subscription.entity.RenewalChargeResult;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A renewal charge from first send to the subscription leaving PAST_DUE: cut off after
+ * too many unanswered sends, then retried until Payment takes it.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RenewalChargeRetryTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final String NO_RESULT = "No result from Payment";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_RETRIES = 2;
+
+    private static final String INSERT =
+        "INSERT INTO subscriptions (id, user_id, plan_id, plan_name, status, start_date, next_billing_date, price, " +
+        "currency, billing_cycle) VALUES (?, 'user-1', ?, 'Plan', 'ACTIVE', ?, ?, 9.99, 'USD', 'MONTHLY')";
+
+    // Takes the charges out of the way of the sweeps' age checks
+    private static final String AGE = "UPDATE renewal_charges SET updated_at = now() - interval '1 hour'";
+
+    private final LocalDateTime renewedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    private JdbcTemplate jdbcTemplate;
+    private RenewalChargeRepository repository;
+
+    @BeforeEach
+    void migrate() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        Flyway flyway = Flyway.configure()
+            .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+            .mixed(true)
+            .cleanDisabled(false)
+            .dataSource(dataSource)
+            .locations("classpath:db/migration/subscription")
+            .load();
+        flyway.clean();
+        flyway.migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new RenewalChargeRepository(jdbcTemplate);
+    }
+
+    @Test
+    void unansweredChargeIsFailedAfterMaxAttemptsAndReopenedOnRetry() {
+        RenewalCharge charge = renew("sub-1");
+        jdbcTemplate.update("UPDATE renewal_charges SET attempts = ?", MAX_ATTEMPTS);
+        jdbcTemplate.update(AGE);
+
+        assertThat(repository.claimStale(1000, MAX_ATTEMPTS, 10)).isEmpty();
+        List<RenewalCharge> exhausted = repository.claimExhausted(1000, MAX_ATTEMPTS, 10);
+        assertThat(exhausted).extracting(RenewalCharge::getId).containsExactly(charge.getId());
+        repository.applyResults(Collections.singletonList(
+            new RenewalChargeResult(charge.getId(), false, null, NO_RESULT)));
+        assertThat(status("sub-1")).isEqualTo("PAST_DUE");
+
+        // Not yet: the failure is recent
+        assertThat(repository.createRetries(3_600_000, MAX_RETRIES, 10, NO_RESULT)).isEmpty();
+        jdbcTemplate.update(AGE);
+        List<RenewalCharge> retries = repository.createRetries(1000, MAX_RETRIES, 10, NO_RESULT);
+
+        // Payment may still hold it under this id
+        assertThat(retries).hasSize(1);
+        assertThat(retries.get(0).getId()).isEqualTo(charge.getId());
+        assertThat(retries.get(0).getStatus()).isEqualTo("PENDING");
+        assertThat(retries.get(0).getAttempts()).isEqualTo(1);
+        assertThat(retries.get(0).getRetry()).isEqualTo(1);
+
+        repository.applyResults(Collections.singletonList(
+            new RenewalChargeResult(charge.getId(), true, "pi_1", null)));
+        assertThat(status("sub-1")).isEqualTo("ACTIVE");
+    }
+
+    @Test
+    void declinedChargeIsRetriedAsNewChargeUpToMaxRetries() {
+        RenewalCharge charge = renew("sub-2");
+        String declined = charge.getId();
+        repository.applyResults(Collections.singletonList(
+            new RenewalChargeResult(declined, false, null, "Payment FAILED")));
+        assertThat(status("sub-2")).isEqualTo("PAST_DUE");
+
+        for (int retry = 1; retry <= MAX_RETRIES; retry++) {
+            jdbcTemplate.update(AGE);
+            List<RenewalCharge> retries = repository.createRetries(1000, MAX_RETRIES, 10, NO_RESULT);
+            assertThat(retries).hasSize(1);
+            assertThat(retries.get(0).getId()).isNotEqualTo(declined);
+            assertThat(retries.get(0).getRetry()).isEqualTo(retry);
+            // One open charge per period: a second sweep finds nothing while it is pending
+            assertThat(repository.createRetries(0, MAX_RETRIES, 10, NO_RESULT)).isEmpty();
+
+            declined = retries.get(0).getId();
+            repository.applyResults(Collections.singletonList(
+                new RenewalChargeResult(declined, false, null, "Payment FAILED")));
+        }
+
+        jdbcTemplate.update(AGE);
+        assertThat(repository.createRetries(1000, MAX_RETRIES, 10, NO_RESULT)).isEmpty();
+        assertThat(status("sub-2")).isEqualTo("PAST_DUE");
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM renewal_charges WHERE status = 'FAILED'", Integer.class)).isEqualTo(1 + MAX_RETRIES);
+    }
+
+    private RenewalCharge renew(String subscriptionId) {
+        jdbcTemplate.update(INSERT, subscriptionId, "plan-" + subscriptionId, Timestamp.valueOf(renewedAt),
+            Timestamp.valueOf(renewedAt.plusMonths(1)));
+        List<RenewalCharge> charges = repository.createForRenewed(Collections.singletonList(subscriptionId), renewedAt);
+        assertThat(charges).hasSize(1);
+        return charges.get(0);
+    }
+
+    private String status(String subscriptionId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM subscriptions WHERE id = ?", String.class,
+            subscriptionId);
+    }
+}
@@ -0,0 +1,130 @@
+package com.smartsubscription.subscription.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the subscription migrations against a real Postgres, fills the table with
+ * enough rows for the planner to care, and checks that the keyset and due-date
+ * queries are served by the indexes added for them. The statements mirror the ones
+ * built by SubscriptionRepository and SubscriptionJdbcRepository.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SubscriptionIndexPlanTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    // 4,000 users with 50 subscriptions each, one per plan; a tenth on trial, a tenth cancelled
+    private static final String SEED =
+        "INSERT INTO subscriptions (id, user_id, plan_id, plan_name, status, start_date, next_billing_date, " +
+        "trial_end_date, price, currency, billing_cycle, auto_renew, created_at, updated_at) " +
+        "SELECT 'sub-' || g, 'user-' || (g / 50), 'plan-' || (g % 50), 'Plan', " +
+        "CASE g % 10 WHEN 0 THEN 'TRIAL' WHEN 1 THEN 'CANCELLED' ELSE 'ACTIVE' END, " +
+        "now() - interval '30 days', now() + (g % 365) * interval '1 day', " +
+        "CASE g % 10 WHEN 0 THEN now() + (g % 30) * interval '1 day' END, " +
+        "9.99, 'USD', 'MONTHLY', g % 4 <> 0, now() - (g % 1000) * interval '1 minute', now() " +
+        "FROM generate_series(1, 200000) AS g";
+
+    // SubscriptionRepository.findPageByUserIdAfter
+    private static final String USER_PAGE_AFTER =
+        "SELECT * FROM subscriptions WHERE user_id = ? " +
+        "AND (created_at > ? OR (created_at = ? AND id > ?)) ORDER BY created_at, id LIMIT 20";
+
+    // SubscriptionJdbcRepository.findDueForRenewal, one partition, after a cursor
+    private static final String RENEWAL_PAGE =
+        "SELECT id, user_id, billing_cycle, auto_renew, next_billing_date FROM subscriptions " +
+        "WHERE status = 'ACTIVE' AND next_billing_date < ? AND auto_renew = true " +
+        "AND (hashtext(user_id) & 2147483647) % ? = ? " +
+        "AND (next_billing_date, id) > (?, ?) ORDER BY next_billing_date, id LIMIT ?";
+
+    // SubscriptionJdbcRepository.findUpcoming for trial endings, after a cursor
+    private static final String TRIAL_ENDING_PAGE =
+        "SELECT id, user_id, billing_cycle, auto_renew, trial_end_date FROM subscriptions " +
+        "WHERE status = ? AND trial_end_date < ? " +
+        "AND (trial_end_date, id) > (?, ?) ORDER BY trial_end_date, id LIMIT ?";
+
+    // SubscriptionJdbcRepository.expireDue for active subscriptions without auto-renew
+    private static final String EXPIRE_DUE =
+        "UPDATE subscriptions SET status = 'EXPIRED', updated_at = ?, version = version + 1 " +
+        "WHERE status = ? AND id IN (" +
+        "SELECT id FROM subscriptions WHERE status = ? AND next_billing_date < ? " +
+        "AND auto_renew IS DISTINCT FROM true " +
+        "ORDER BY next_billing_date, id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+        "RETURNING id, user_id, billing_cycle, auto_renew, next_billing_date";
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrateAndSeed() {
+        Flyway.configure()
+            .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+            .mixed(true)
+            .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+            .locations("classpath:db/migration/subscription")
+            .load()
+            .migrate();
+
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+        jdbcTemplate.execute(SEED);
+        jdbcTemplate.execute("ANALYZE subscriptions");
+    }
+
+    @Test
+    void migrationsLeaveNoInvalidIndexes() {
+        Integer invalid = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM pg_index WHERE NOT indisvalid", Integer.class);
+        assertThat(invalid).isZero();
+    }
+
+    @Test
+    void userKeysetPageUsesUserCreatedIndex() {
+        LocalDateTime cursor = LocalDateTime.now().minusDays(1);
+        assertThat(explain(USER_PAGE_AFTER, "user-42", cursor, cursor, "sub-2100"))
+            .contains("idx_subscriptions_user_created")
+            .doesNotContain("Seq Scan")
+            .doesNotContain("Sort");
+    }
+
+    @Test
+    void renewalPageUsesAutoRenewDueIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        assertThat(explain(RENEWAL_PAGE, now.plusDays(1), 16, 3, now.minusDays(1), "", 500))
+            .contains("idx_subscriptions_auto_renew_due")
+            .doesNotContain("Seq Scan");
+    }
+
+    @Test
+    void trialEndingPageUsesStatusTrialEndIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        assertThat(explain(TRIAL_ENDING_PAGE, "TRIAL", now.plusDays(1), now.minusDays(1), "", 500))
+            .contains("idx_subscriptions_status_trial_end")
+            .doesNotContain("Seq Scan");
+    }
+
+    @Test
+    void expiryUsesStatusNextBillingIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        assertThat(explain(EXPIRE_DUE, now, "ACTIVE", "ACTIVE", now.plusDays(1), 1000))
+            .contains("idx_subscriptions_status_next_billing")
+            .doesNotContain("Seq Scan");
+    }
+
+    private static String explain(String sql, Object... args) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args);
+        return String.join("\n", plan);
+    }
+}